@@ -6,10 +6,13 @@
 
 package us.parr.lib;
 
+import us.parr.lib.collections.CountingDenseIntSet;
 import us.parr.lib.collections.CountingHashSet;
+import us.parr.lib.collections.CountingOpenHashSet;
 import us.parr.lib.collections.CountingSet;
 import us.parr.lib.collections.MultiMap;
 import us.parr.lib.collections.MultiMapOfSets;
+import us.parr.lib.util.HyperLogLog;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -23,6 +26,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
 
 public class ParrtCollections {
 	@SafeVarargs
@@ -75,6 +80,17 @@ public class ParrtCollections {
 		return valueCounts;
 	}
 
+	/** Estimate how many different values appear in column colIndex using
+	 *  a {@link HyperLogLog}, in constant memory.
+	 */
+	public static long distinctValuesInColumn(List<int[]> X, int colIndex) {
+		HyperLogLog hll = new HyperLogLog();
+		for (int i = 0; i<X.size(); i++) {
+			hll.add(X.get(i)[colIndex]);
+		}
+		return hll.cardinality();
+	}
+
 	public static <T> List<T> filter(List<T> data, Predicate<T> pred) {
 		List<T> output = new ArrayList<>();
 		if ( data!=null ) for (T x : data) {
@@ -459,6 +475,33 @@ public class ParrtCollections {
 		return sorted;
 	}
 
+	/** A collector that counts stream elements into a {@link CountingOpenHashSet};
+	 *  parallel streams merge per-thread partial sets in place.
+	 */
+	public static <T> Collector<T, ?, CountingOpenHashSet<T>> toCountingSet() {
+		return toCountingSet(CountingOpenHashSet::new);
+	}
+
+	/** A collector that counts stream elements into sets from factory */
+	public static <T, S extends CountingSet<T>> Collector<T, ?, S> toCountingSet(Supplier<S> factory) {
+		return Collector.of(factory,
+		                    CountingSet::add,
+		                    (a, b) -> { a.addAll(b); return a; },
+		                    Collector.Characteristics.UNORDERED,
+		                    Collector.Characteristics.IDENTITY_FINISH);
+	}
+
+	/** A collector that counts ints in 0..maxSetValue into a {@link CountingDenseIntSet};
+	 *  partial sets are combined by adding the count arrays.
+	 */
+	public static Collector<Integer, ?, CountingDenseIntSet> toCountingDenseIntSet(int maxSetValue) {
+		return Collector.of(() -> new CountingDenseIntSet(maxSetValue),
+		                    CountingDenseIntSet::add,
+		                    (a, b) -> { a.addAll(b); return a; },
+		                    Collector.Characteristics.UNORDERED,
+		                    Collector.Characteristics.IDENTITY_FINISH);
+	}
+
 	private static Object dupObject(Object o) {
 		try {
 			return o.getClass().newInstance();
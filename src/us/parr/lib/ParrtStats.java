@@ -170,6 +170,29 @@ public class ParrtStats {
 		return entropy;
 	}
 
+	/** Gini impurity of n observations whose category counts c have
+	 *  sum c^2 == sumSquares: 1 - sum p^2 == sum p(1-p) as in gini().
+	 *  Callers that keep sumSquares current get gini in O(1).
+	 */
+	public static double gini(int n, long sumSquares) {
+		if ( n==0 ) return 0.0;
+		return 1.0 - ((double)sumSquares) / ((double)n*n);
+	}
+
+	/** Entropy of n observations whose category counts c have
+	 *  sum clogc(c) == sumClogc: -sum p log2 p == log2(n) - sumClogc / (n ln 2).
+	 */
+	public static double entropy(int n, double sumClogc) {
+		if ( n==0 ) return 0.0;
+		double e = log2(n) - sumClogc / (n * Math.log(2.0));
+		return e<0 ? 0.0 : e; // don't let rounding error go negative
+	}
+
+	/** c ln c, taking 0 ln 0 as 0; see entropy(int, double) */
+	public static double clogc(int c) {
+		return c<=1 ? 0.0 : c * Math.log(c);
+	}
+
 	/** Produce a uniform random integer in [low..high) */
 	public static int uniform(int low, int high) {
 		return low + random.nextInt(high);
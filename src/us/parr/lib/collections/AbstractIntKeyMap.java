@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import us.parr.lib.util.MurmurHash;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/** The int key table shared by the primitive maps {@link IntIntMap},
+ *  {@link IntLongMap}, and {@link IntDoubleMap}: open addressing with
+ *  linear probing as in {@link CountingOpenHashSet} but without boxing keys.
+ *
+ *  Key 0 marks an empty slot in keys[] so key 0 itself lives just past
+ *  the table, in slot capacity of the subclass' values array. Probing,
+ *  deletion, growth, and iteration order all live here. Subclasses keep
+ *  values in a parallel primitive array of length capacity+1 and say how
+ *  to allocate, copy, and clear it. allocateValues() is called from our
+ *  constructor so subclass value fields must not have initializers.
+ */
+public abstract class AbstractIntKeyMap {
+	public static final int DEFAULT_CAPACITY = 16;
+
+	/** Table is never more than this full so probe sequences stay short */
+	public static final float LOAD_FACTOR = 0.6f;
+
+	/** keys[i] is the key in slot i or 0 if slot is empty */
+	protected int[] keys;
+
+	/** Is key 0 present? Its value is in slot keys.length */
+	protected boolean hasZeroKey;
+
+	/** Number of keys, including 0 */
+	protected int n;
+
+	/** Grow when the table holds this many keys */
+	protected int threshold;
+
+	protected AbstractIntKeyMap(int expectedSize) {
+		allocate(tableSizeFor((int)Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR)));
+	}
+
+	/** Copy old's keys; the subclass copies its values */
+	protected AbstractIntKeyMap(AbstractIntKeyMap old) {
+		keys = Arrays.copyOf(old.keys, old.keys.length);
+		hasZeroKey = old.hasZeroKey;
+		n = old.n;
+		threshold = old.threshold;
+	}
+
+	public int size() {
+		return n;
+	}
+
+	public boolean isEmpty() {
+		return n==0;
+	}
+
+	public boolean containsKey(int key) {
+		return slot(key)>=0;
+	}
+
+	public boolean remove(int key) {
+		int i = slot(key);
+		if ( i<0 ) return false;
+		delete(i);
+		return true;
+	}
+
+	/** Remove all keys but keep the table for reuse */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		hasZeroKey = false;
+		n = 0;
+		clearValues();
+	}
+
+	/** Stream keys in table order without boxing */
+	public IntStream keys() {
+		int[] keys = this.keys;
+		int zero = keys.length;
+		boolean hasZero = hasZeroKey;
+		IndexSpliterator slots = new IndexSpliterator(i -> i==zero ? hasZero : keys[i]!=0, 0, zero+1);
+		return StreamSupport.intStream(slots, false).map(i -> i==zero ? 0 : keys[i]);
+	}
+
+	/** Return the keys in table order */
+	public int[] keyArray() {
+		int[] a = new int[n];
+		int j = 0;
+		for (int i = 0; i<keys.length; i++) {
+			if ( keys[i]!=0 ) a[j++] = keys[i];
+		}
+		if ( hasZeroKey ) a[j] = 0;
+		return a;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		forEachSlot(i -> {
+			if ( buf.length()>1 ) buf.append(", ");
+			buf.append(keyAt(i));
+			buf.append("=");
+			appendValue(buf, i);
+		});
+		buf.append("}");
+		return buf.toString();
+	}
+
+	// table support
+
+	protected abstract void allocateValues(int capacity);
+
+	/** The values array, to hand back to copyValue() during rehash() */
+	protected abstract Object valueArray();
+
+	/** Copy value in slot from of oldValues, a former valueArray(), to slot to */
+	protected abstract void copyValue(Object oldValues, int from, int to);
+
+	/** Copy value in slot from to slot to */
+	protected abstract void moveValue(int from, int to);
+
+	protected abstract void clearValue(int i);
+
+	protected abstract void clearValues();
+
+	protected abstract void appendValue(StringBuilder buf, int i);
+
+	/** Call action with each occupied slot in table order, key 0's last */
+	protected void forEachSlot(IntConsumer action) {
+		for (int i = 0; i<keys.length; i++) {
+			if ( keys[i]!=0 ) action.accept(i);
+		}
+		if ( hasZeroKey ) action.accept(keys.length);
+	}
+
+	protected int keyAt(int slot) {
+		return slot==keys.length ? 0 : keys[slot];
+	}
+
+	/** Grow the table to capacity, moving keys and values to match */
+	protected void rehash(int capacity) {
+		int[] oldKeys = keys;
+		Object oldValues = valueArray();
+		allocate(capacity);
+		for (int i = 0; i<oldKeys.length; i++) {
+			if ( oldKeys[i]!=0 ) copyValue(oldValues, i, place(oldKeys[i]));
+		}
+		copyValue(oldValues, oldKeys.length, capacity); // key 0's slot
+	}
+
+	protected static int hash(int key) {
+		int hash = MurmurHash.initialize();
+		hash = MurmurHash.update(hash, key);
+		return MurmurHash.finish(hash, 1);
+	}
+
+	/** Return slot index of key or -1 if not found */
+	protected int slot(int key) {
+		if ( key==0 ) return hasZeroKey ? keys.length : -1;
+		int mask = keys.length-1;
+		int i = hash(key) & mask;
+		int ki;
+		while ( (ki = keys[i])!=0 ) {
+			if ( ki==key ) return i;
+			i = (i+1) & mask;
+		}
+		return -1;
+	}
+
+	/** Return key's slot if present, else add key and return -(slot+1);
+	 *  either way the caller stores its value. Saves put() and addTo()
+	 *  probing twice for a new key.
+	 */
+	protected int findOrInsert(int key) {
+		if ( key==0 ) {
+			if ( hasZeroKey ) return keys.length;
+			hasZeroKey = true;
+			n++;
+			return -(keys.length+1);
+		}
+		int mask = keys.length-1;
+		int i = hash(key) & mask;
+		int ki;
+		while ( (ki = keys[i])!=0 ) {
+			if ( ki==key ) return i;
+			i = (i+1) & mask;
+		}
+		if ( n>=threshold ) {
+			rehash(keys.length*2);
+			i = place(key);
+		}
+		else {
+			keys[i] = key;
+		}
+		n++;
+		return -(i+1);
+	}
+
+	/** Add key, known not to be in the table, and return its slot; the
+	 *  caller stores its value.
+	 */
+	protected int insert(int key) {
+		if ( key==0 ) {
+			hasZeroKey = true;
+			n++;
+			return keys.length;
+		}
+		if ( n>=threshold ) {
+			rehash(keys.length*2);
+		}
+		n++;
+		return place(key);
+	}
+
+	/** Remove slot i; see {@link ProbeRun#delete} */
+	protected void delete(int i) {
+		n--;
+		if ( i==keys.length ) {
+			hasZeroKey = false;
+			clearValue(i);
+			return;
+		}
+		i = ProbeRun.delete(i, keys.length-1, this::home, this::move);
+		keys[i] = 0;
+		clearValue(i);
+	}
+
+	/** Home slot of the key in slot j or -1 if empty */
+	protected int home(int j) {
+		return keys[j]==0 ? -1 : hash(keys[j]) & (keys.length-1);
+	}
+
+	protected void move(int from, int to) {
+		keys[to] = keys[from];
+		moveValue(from, to);
+	}
+
+	/** Put nonzero key into the first free slot of a table that has room
+	 *  and return the slot; used during rehash().
+	 */
+	protected int place(int key) {
+		int mask = keys.length-1;
+		int i = hash(key) & mask;
+		while ( keys[i]!=0 ) {
+			i = (i+1) & mask;
+		}
+		keys[i] = key;
+		return i;
+	}
+
+	protected void allocate(int capacity) {
+		keys = new int[capacity];
+		allocateValues(capacity+1);
+		threshold = (int)(capacity * LOAD_FACTOR);
+	}
+
+	protected static int tableSizeFor(int c) {
+		int size = Integer.highestOneBit(Math.max(c, 2)-1) << 1;
+		return Math.max(size, 2);
+	}
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static us.parr.lib.ParrtMath.log2;
+
+/** A counting set of non-negative ints that starts out as parallel sorted
+ *  keys/counts arrays and switches to a {@link CountingDenseIntSet} once
+ *  enough of the key range 0..max key is occupied. Sets with a few large
+ *  ids stay small and sets that fill their range get dense array speed.
+ *  Neither layout boxes keys.
+ *
+ *  Sorted insertion is O(size) so the sparse layout suits the small
+ *  per-node counts it's meant for. The dense layout grows geometrically as
+ *  bigger keys arrive, but only while the larger range stays occupied
+ *  enough; a key far past the dense range sends us back to sparse. Like
+ *  CountingDenseIntSet, a key is a member only if its count is positive.
+ *  Not thread safe.
+ */
+public class AdaptiveCountingIntSet implements CountingSet<Integer> {
+	/** Go dense once this fraction of 0..max key is occupied */
+	public static final double DEFAULT_DENSE_OCCUPANCY = 0.25;
+
+	/** Stay sparse until we have this many keys, however full the range */
+	public static final int DEFAULT_MIN_DENSE_ENTRIES = 16;
+
+	protected static final int INITIAL_SPARSE_CAPACITY = 4;
+
+	protected final double denseOccupancy;
+
+	protected final int minDenseEntries;
+
+	/** Sorted keys with nonzero counts; null once dense */
+	protected int[] keys;
+	protected int[] counts;
+	protected int nentries;
+
+	/** Sum of sparse counts; dense tracks its own */
+	protected int total;
+
+	/** Number of sparse keys with positive count */
+	protected int n;
+
+	/** Non-null once we've switched to the dense layout */
+	protected CountingDenseIntSet dense;
+
+	public AdaptiveCountingIntSet() {
+		this(DEFAULT_DENSE_OCCUPANCY);
+	}
+
+	public AdaptiveCountingIntSet(double denseOccupancy) {
+		this(denseOccupancy, DEFAULT_MIN_DENSE_ENTRIES);
+	}
+
+	public AdaptiveCountingIntSet(double denseOccupancy, int minDenseEntries) {
+		this.denseOccupancy = denseOccupancy;
+		this.minDenseEntries = minDenseEntries;
+		keys = new int[INITIAL_SPARSE_CAPACITY];
+		counts = new int[INITIAL_SPARSE_CAPACITY];
+	}
+
+	public AdaptiveCountingIntSet(CountingSet<Integer> old) {
+		this();
+		addAll(old);
+	}
+
+	public boolean isDense() {
+		return dense!=null;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if ( o==null || !(o instanceof Integer) ) return false;
+		int v = (Integer)o;
+		if ( v<0 ) return false;
+		return count(v)>0;
+	}
+
+	@Override
+	public int count(Integer key) {
+		int k = key;
+		if ( dense!=null ) {
+			return k<dense.set.length ? dense.set[k] : 0;
+		}
+		int i = Arrays.binarySearch(keys, 0, nentries, k);
+		return i>=0 ? counts[i] : 0;
+	}
+
+	@Override
+	public boolean add(Integer key) {
+		int k = key;
+		int old = count(k);
+		set(k, old+1);
+		return old==0;
+	}
+
+	@Override
+	public void set(Integer key, int count) {
+		int k = key;
+		if ( k<0 ) {
+			throw new IllegalArgumentException("keys must be non-negative: "+k);
+		}
+		if ( dense!=null && k>=dense.set.length ) {
+			if ( count==0 ) return;
+			if ( !isDenseEnough(dense.size()+1, k) ) toSparse();
+			else growDense(k);
+		}
+		if ( dense!=null ) {
+			dense.update(k, count);
+			return;
+		}
+		int i = Arrays.binarySearch(keys, 0, nentries, k);
+		int old = i>=0 ? counts[i] : 0;
+		total += count - old;
+		if ( old<=0 && count>0 ) n++;
+		else if ( old>0 && count<=0 ) n--;
+		if ( i>=0 ) {
+			if ( count!=0 ) counts[i] = count;
+			else removeEntry(i);
+			return;
+		}
+		if ( count==0 ) return;
+		insertEntry(-(i+1), k, count);
+		int maxKey = keys[nentries-1];
+		if ( isDenseEnough(nentries, maxKey) ) {
+			toDense(maxKey);
+		}
+	}
+
+	@Override
+	public int total() {
+		return dense!=null ? dense.total() : total;
+	}
+
+	@Override
+	public int size() {
+		return dense!=null ? dense.size() : n;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size()==0;
+	}
+
+	@Override
+	public List<Integer> counts() {
+		if ( dense!=null ) return dense.counts();
+		List<Integer> c = new ArrayList<>(n);
+		for (int i = 0; i<nentries; i++) {
+			if ( counts[i]>0 ) c.add(counts[i]);
+		}
+		return c;
+	}
+
+	/** Return a new set containing this[i]-x[i] for all keys i. Values in x
+	 *  but not in this are ignored.  Values in this but not in x yield this's same value
+	 *  in the result.
+	 */
+	@Override
+	public AdaptiveCountingIntSet minus(CountingSet<Integer> x) {
+		AdaptiveCountingIntSet r = new AdaptiveCountingIntSet(denseOccupancy, minDenseEntries);
+		for (Iterator<Integer> it = iterator(); it.hasNext(); ) {
+			Integer key = it.next();
+			int c = count(key);
+			if ( x.contains(key) ) c -= x.count(key);
+			r.set(key, c);
+		}
+		return r;
+	}
+
+	/** Return smallest key with the max count or -1 if empty */
+	@Override
+	public Integer argmax() {
+		if ( dense!=null ) return dense.argmax();
+		int mi = -1;
+		int m = 0;
+		for (int i = 0; i<nentries; i++) {
+			if ( counts[i]>m ) {
+				m = counts[i];
+				mi = keys[i];
+			}
+		}
+		return mi;
+	}
+
+	@Override
+	public List<Integer> topK(int k) {
+		if ( dense!=null ) return dense.topK(k);
+		return extremeK(k, true);
+	}
+
+	@Override
+	public List<Integer> bottomK(int k) {
+		if ( dense!=null ) return dense.bottomK(k);
+		return extremeK(k, false);
+	}
+
+	protected List<Integer> extremeK(int k, boolean largest) {
+		CountHeap heap = new CountHeap(Math.min(k, n), largest, false);
+		for (int i = 0; i<nentries; i++) {
+			if ( counts[i]>0 ) heap.offer(keys[i], counts[i]);
+		}
+		return CountingDenseIntSet.asList(heap.ids());
+	}
+
+	@Override
+	public double entropy() {
+		if ( dense!=null ) return dense.entropy();
+		double entropy = 0.0;
+		for (int i = 0; i<nentries; i++) {
+			if ( counts[i]<=0 ) continue; // avoid log(0), which is undefined
+			double p = ((double)counts[i]) / total;
+			entropy += p * log2(p);
+		}
+		entropy = -entropy;
+		return entropy;
+	}
+
+	@Override
+	public String toString() {
+		if ( dense!=null ) return dense.toString();
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		int m = 0;
+		for (int i = 0; i<nentries; i++) {
+			if ( counts[i]>0 ) {
+				if ( m>0 ) buf.append(", ");
+				buf.append(keys[i]);
+				buf.append("=");
+				buf.append(counts[i]);
+				m++;
+			}
+		}
+		buf.append("}");
+		return buf.toString();
+	}
+
+	// satisfy the Set interface
+
+	@Override
+	public Set<Integer> keySet() {
+		if ( dense!=null ) return dense.keySet();
+		Set<Integer> s = new LinkedHashSet<>();
+		for (int i = 0; i<nentries; i++) {
+			if ( counts[i]>0 ) s.add(keys[i]);
+		}
+		return s;
+	}
+
+	@Override
+	public Set<Map.Entry<Integer, Integer>> entrySet() {
+		if ( dense!=null ) return dense.entrySet();
+		Set<Map.Entry<Integer, Integer>> entries = new HashSet<>();
+		for (int i = 0; i<nentries; i++) {
+			if ( counts[i]>0 ) entries.add(new CountingSetEntry<>(keys[i], counts[i]));
+		}
+		return entries;
+	}
+
+	/** Iterate over members in ascending order */
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+			int i = advance(0);
+
+			int advance(int j) {
+				int limit = dense!=null ? dense.set.length : nentries;
+				while ( j<limit && (dense!=null ? dense.set[j] : counts[j])<=0 ) j++;
+				return j;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return i<(dense!=null ? dense.set.length : nentries);
+			}
+
+			@Override
+			public Integer next() {
+				if ( !hasNext() ) throw new NoSuchElementException();
+				int key = dense!=null ? i : keys[i];
+				i = advance(i+1);
+				return key;
+			}
+		};
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if ( !contains(o) ) return false;
+		set((Integer)o, 0);
+		return true;
+	}
+
+	/** Empty the set and go back to the sparse layout */
+	@Override
+	public void clear() {
+		dense = null;
+		keys = new int[INITIAL_SPARSE_CAPACITY];
+		counts = new int[INITIAL_SPARSE_CAPACITY];
+		nentries = 0;
+		total = 0;
+		n = 0;
+	}
+
+	@Override
+	public Object[] toArray() {
+		return keySet().toArray();
+	}
+
+	@Override
+	public <T> T[] toArray(T[] a) {
+		return keySet().toArray(a);
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+".containsAll");
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+".retainAll");
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+".removeAll");
+	}
+
+	// layout support
+
+	/** Would nkeys keys in range 0..maxKey be worth a dense array? */
+	protected boolean isDenseEnough(int nkeys, int maxKey) {
+		return nkeys>=minDenseEntries && nkeys >= (maxKey+1.0)*denseOccupancy;
+	}
+
+	protected void insertEntry(int i, int key, int count) {
+		if ( nentries==keys.length ) {
+			keys = Arrays.copyOf(keys, keys.length*2);
+			counts = Arrays.copyOf(counts, counts.length*2);
+		}
+		System.arraycopy(keys, i, keys, i+1, nentries-i);
+		System.arraycopy(counts, i, counts, i+1, nentries-i);
+		keys[i] = key;
+		counts[i] = count;
+		nentries++;
+	}
+
+	protected void removeEntry(int i) {
+		System.arraycopy(keys, i+1, keys, i, nentries-i-1);
+		System.arraycopy(counts, i+1, counts, i, nentries-i-1);
+		nentries--;
+	}
+
+	protected void toDense(int maxKey) {
+		dense = new CountingDenseIntSet(maxKey);
+		for (int i = 0; i<nentries; i++) {
+			dense.set[keys[i]] = counts[i];
+		}
+		dense.recount();
+		keys = null;
+		counts = null;
+		nentries = 0;
+	}
+
+	/** Go back to sorted keys/counts arrays holding the nonzero dense counts */
+	protected void toSparse() {
+		int[] set = dense.set;
+		int nonzero = 0;
+		for (int c : set) {
+			if ( c!=0 ) nonzero++;
+		}
+		keys = new int[Math.max(nonzero*2, INITIAL_SPARSE_CAPACITY)];
+		counts = new int[keys.length];
+		nentries = 0;
+		for (int i = 0; i<set.length; i++) {
+			if ( set[i]!=0 ) {
+				keys[nentries] = i;
+				counts[nentries] = set[i];
+				nentries++;
+			}
+		}
+		total = dense.total();
+		n = dense.size();
+		dense = null;
+	}
+
+	/** Make room for key in dense layout, doubling its range if that
+	 *  doesn't drop occupancy below denseOccupancy.
+	 */
+	protected void growDense(int key) {
+		int roomy = (int)Math.min(dense.set.length*2L-1, (long)((dense.size()+1)/denseOccupancy)-1);
+		int max = Math.max(key, roomy);
+		CountingDenseIntSet bigger = new CountingDenseIntSet(max);
+		System.arraycopy(dense.set, 0, bigger.set, 0, dense.set.length);
+		bigger.total = dense.total;
+		bigger.n = dense.n;
+		bigger.maxIndex = dense.maxIndex;
+		bigger.maxDirty = dense.maxDirty;
+		dense = bigger;
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.Collection;
+import java.util.List;
+
+/** A {@link MultiMapOfLists} for maps where most keys have only a few
+ *  values: each key's list keeps up to three values in fields and becomes
+ *  an ArrayList only when it grows past that.
+ */
+public class CompactMultiMapOfLists<K,V> extends BaseMultiMap<K,V> {
+	protected Collection<V> createValueCollection() {
+		return new SmallList<V>();
+	}
+
+	@Override
+	protected BaseMultiMap<K, V> createCollection() {
+		return new CompactMultiMapOfLists<K, V>();
+	}
+
+	@Override
+	public List<V> get(K key) {
+		return (List<V>)super.get(key);
+	}
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.Collection;
+
+/** A {@link MultiMapOfSets} for maps where most keys have only a few
+ *  values: each key's set is a small sorted array that becomes a TreeSet
+ *  only when it grows past eight values. Values iterate in natural order
+ *  just like MultiMapOfSets.
+ */
+public class CompactMultiMapOfSets<K,V> extends BaseMultiMap<K, V> {
+	protected Collection<V> createValueCollection() {
+		return new SmallSet<V>();
+	}
+
+	@Override
+	protected BaseMultiMap<K, V> createCollection() {
+		return new CompactMultiMapOfSets<K, V>();
+	}
+}
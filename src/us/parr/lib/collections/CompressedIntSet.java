@@ -0,0 +1,741 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/** A compressed set of ints for large but clustered id spaces, in the
+ *  style of Roaring bitmaps. The high 16 bits of a member pick a chunk and
+ *  the low 16 bits are stored in that chunk's container, which is one of:
+ *
+ *  an array container: sorted char[] of up to 4096 members (2 bytes each),
+ *  a bitmap container: 1024 longs, one bit per possible member (8k bytes),
+ *  a run container: sorted (start, length-1) char pairs for long runs.
+ *
+ *  Containers switch between array and bitmap as they cross 4096 members;
+ *  runOptimize() converts containers to runs where that is smaller. Union,
+ *  intersection, and difference work container by container, skipping
+ *  chunks that can't contribute. Members are treated as unsigned ints when
+ *  ordering. Not thread safe.
+ */
+public class CompressedIntSet extends AbstractSet<Integer> {
+	/** Array containers bigger than this become bitmaps */
+	protected static final int MAX_ARRAY_SIZE = 4096;
+
+	protected static final byte ARRAY = 0;
+	protected static final byte BITMAP = 1;
+	protected static final byte RUN = 2;
+
+	protected static final byte FORMAT_VERSION = 1;
+
+	/** Sorted high 16 bits of the chunks that have members */
+	protected char[] keys = new char[4];
+
+	/** containers[i] holds low 16 bits of members whose high bits are keys[i] */
+	protected Container[] containers = new Container[4];
+
+	protected int nchunks;
+
+	public CompressedIntSet() {
+	}
+
+	public CompressedIntSet(CompressedIntSet old) {
+		keys = Arrays.copyOf(old.keys, old.keys.length);
+		containers = new Container[old.containers.length];
+		for (int i = 0; i<old.nchunks; i++) {
+			containers[i] = old.containers[i].copy();
+		}
+		nchunks = old.nchunks;
+	}
+
+	public static CompressedIntSet of(int... members) {
+		CompressedIntSet s = new CompressedIntSet();
+		for (int m : members) {
+			s.add(m);
+		}
+		return s;
+	}
+
+	public boolean add(int x) {
+		char hi = (char)(x >>> 16);
+		int i = chunk(hi);
+		if ( i<0 ) {
+			i = -(i+1);
+			insertChunk(i, hi, new ArrayContainer());
+		}
+		Container c = containers[i];
+		int before = c.cardinality();
+		containers[i] = c.add((char)x);
+		return containers[i].cardinality()!=before;
+	}
+
+	@Override
+	public boolean add(Integer x) {
+		return add(x.intValue());
+	}
+
+	public boolean contains(int x) {
+		int i = chunk((char)(x >>> 16));
+		return i>=0 && containers[i].contains((char)x);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if ( o==null || !(o instanceof Integer) ) return false;
+		return contains(((Integer)o).intValue());
+	}
+
+	public boolean remove(int x) {
+		int i = chunk((char)(x >>> 16));
+		if ( i<0 ) return false;
+		Container c = containers[i];
+		int before = c.cardinality();
+		c = c.remove((char)x);
+		if ( c.cardinality()==0 ) {
+			removeChunk(i);
+		}
+		else {
+			containers[i] = c;
+		}
+		return c.cardinality()!=before;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if ( o==null || !(o instanceof Integer) ) return false;
+		return remove(((Integer)o).intValue());
+	}
+
+	/** Number of members, which might exceed Integer.MAX_VALUE */
+	public long cardinality() {
+		long n = 0;
+		for (int i = 0; i<nchunks; i++) {
+			n += containers[i].cardinality();
+		}
+		return n;
+	}
+
+	@Override
+	public int size() {
+		return (int)Math.min(cardinality(), Integer.MAX_VALUE);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return nchunks==0;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(containers, 0, nchunks, null);
+		nchunks = 0;
+	}
+
+	/** Return a new set with members in this or other */
+	public CompressedIntSet or(CompressedIntSet other) {
+		CompressedIntSet r = new CompressedIntSet();
+		int i = 0, j = 0;
+		while ( i<nchunks || j<other.nchunks ) {
+			if ( j>=other.nchunks || (i<nchunks && keys[i]<other.keys[j]) ) {
+				r.appendChunk(keys[i], containers[i++].copy());
+			}
+			else if ( i>=nchunks || other.keys[j]<keys[i] ) {
+				r.appendChunk(other.keys[j], other.containers[j++].copy());
+			}
+			else {
+				r.appendChunk(keys[i], containers[i++].or(other.containers[j++]));
+			}
+		}
+		return r;
+	}
+
+	/** Return a new set with members in both this and other */
+	public CompressedIntSet and(CompressedIntSet other) {
+		CompressedIntSet r = new CompressedIntSet();
+		int i = 0, j = 0;
+		while ( i<nchunks && j<other.nchunks ) {
+			if ( keys[i]<other.keys[j] ) i++;
+			else if ( other.keys[j]<keys[i] ) j++;
+			else {
+				Container c = containers[i++].and(other.containers[j++]);
+				if ( c.cardinality()>0 ) r.appendChunk(keys[i-1], c);
+			}
+		}
+		return r;
+	}
+
+	/** Return a new set with members in this but not other */
+	public CompressedIntSet andNot(CompressedIntSet other) {
+		CompressedIntSet r = new CompressedIntSet();
+		int i = 0, j = 0;
+		while ( i<nchunks ) {
+			while ( j<other.nchunks && other.keys[j]<keys[i] ) j++;
+			Container c;
+			if ( j<other.nchunks && other.keys[j]==keys[i] ) c = containers[i].andNot(other.containers[j]);
+			else c = containers[i].copy();
+			if ( c.cardinality()>0 ) r.appendChunk(keys[i], c);
+			i++;
+		}
+		return r;
+	}
+
+	/** Convert each container to a run container if that's smaller */
+	public void runOptimize() {
+		for (int i = 0; i<nchunks; i++) {
+			containers[i] = containers[i].optimize();
+		}
+	}
+
+	/** Call action on each member in ascending (unsigned) order */
+	public void forEachInt(IntConsumer action) {
+		for (int i = 0; i<nchunks; i++) {
+			containers[i].forEach(keys[i] << 16, action);
+		}
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+			int chunk = 0;
+			int next = nchunks>0 ? containers[0].nextValue(0) : -1;
+			int last;
+			boolean canRemove;
+
+			@Override
+			public boolean hasNext() {
+				return chunk<nchunks;
+			}
+
+			@Override
+			public Integer next() {
+				if ( chunk>=nchunks ) throw new NoSuchElementException();
+				int x = (keys[chunk] << 16) | next;
+				next = containers[chunk].nextValue(next+1);
+				if ( next<0 && ++chunk<nchunks ) {
+					next = containers[chunk].nextValue(0);
+				}
+				last = x;
+				canRemove = true;
+				return x;
+			}
+
+			/** Removing might drop last's chunk or swap its container, so
+			 *  find our chunk again by key; next is a value so it still holds.
+			 */
+			@Override
+			public void remove() {
+				if ( !canRemove ) throw new IllegalStateException();
+				canRemove = false;
+				if ( chunk>=nchunks ) {
+					CompressedIntSet.this.remove(last);
+					chunk = nchunks;
+					return;
+				}
+				char hi = keys[chunk];
+				CompressedIntSet.this.remove(last);
+				chunk = chunk(hi);
+			}
+		};
+	}
+
+	/** Approximate heap bytes used by container data */
+	public long sizeInBytes() {
+		long n = keys.length*2L;
+		for (int i = 0; i<nchunks; i++) {
+			n += containers[i].sizeInBytes();
+		}
+		return n;
+	}
+
+	/** Serialize to: version, number of chunks, then per chunk its key, type,
+	 *  and contents (cardinality and members, bitmap words, or runs).
+	 */
+	public byte[] toBytes() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try ( DataOutputStream out = new DataOutputStream(bytes) ) {
+			out.writeByte(FORMAT_VERSION);
+			out.writeInt(nchunks);
+			for (int i = 0; i<nchunks; i++) {
+				out.writeChar(keys[i]);
+				containers[i].write(out);
+			}
+		}
+		catch (IOException ioe) { // can't happen writing to memory
+			throw new RuntimeException(ioe);
+		}
+		return bytes.toByteArray();
+	}
+
+	public static CompressedIntSet fromBytes(byte[] bytes) {
+		CompressedIntSet s = new CompressedIntSet();
+		try ( DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes)) ) {
+			if ( in.readByte()!=FORMAT_VERSION ) {
+				throw new IllegalArgumentException("not a serialized CompressedIntSet");
+			}
+			int n = in.readInt();
+			for (int i = 0; i<n; i++) {
+				char key = in.readChar();
+				s.appendChunk(key, Container.read(in));
+			}
+		}
+		catch (IOException ioe) {
+			throw new IllegalArgumentException("truncated CompressedIntSet", ioe);
+		}
+		return s;
+	}
+
+	// chunk support
+
+	protected int chunk(char hi) {
+		return Arrays.binarySearch(keys, 0, nchunks, hi);
+	}
+
+	protected void insertChunk(int i, char key, Container c) {
+		if ( nchunks==keys.length ) {
+			keys = Arrays.copyOf(keys, keys.length*2);
+			containers = Arrays.copyOf(containers, containers.length*2);
+		}
+		System.arraycopy(keys, i, keys, i+1, nchunks-i);
+		System.arraycopy(containers, i, containers, i+1, nchunks-i);
+		keys[i] = key;
+		containers[i] = c;
+		nchunks++;
+	}
+
+	protected void appendChunk(char key, Container c) {
+		insertChunk(nchunks, key, c);
+	}
+
+	protected void removeChunk(int i) {
+		System.arraycopy(keys, i+1, keys, i, nchunks-i-1);
+		System.arraycopy(containers, i+1, containers, i, nchunks-i-1);
+		containers[--nchunks] = null;
+	}
+
+	// containers
+
+	/** Holds the low 16 bits of members within one chunk. Mutators return
+	 *  the container to use from then on, which changes when we switch layout.
+	 */
+	protected static abstract class Container {
+		abstract Container add(char x);
+		abstract Container remove(char x);
+		abstract boolean contains(char x);
+		abstract int cardinality();
+
+		/** Smallest member >= from, or -1 if none */
+		abstract int nextValue(int from);
+
+		abstract void forEach(int base, IntConsumer action);
+		abstract BitmapContainer toBitmap();
+		abstract Container copy();
+		abstract long sizeInBytes();
+		abstract void write(DataOutputStream out) throws IOException;
+
+		Container or(Container o) {
+			if ( this instanceof ArrayContainer && o instanceof ArrayContainer &&
+				 cardinality()+o.cardinality()<=MAX_ARRAY_SIZE )
+			{
+				return ((ArrayContainer)this).or((ArrayContainer)o);
+			}
+			BitmapContainer r = toBitmap();
+			BitmapContainer b = o.toBitmap();
+			for (int i = 0; i<r.words.length; i++) {
+				r.words[i] |= b.words[i];
+			}
+			return r.recount();
+		}
+
+		Container and(Container o) {
+			if ( this instanceof ArrayContainer ) return ((ArrayContainer)this).filter(o, true);
+			if ( o instanceof ArrayContainer ) return ((ArrayContainer)o).filter(this, true);
+			BitmapContainer r = toBitmap();
+			BitmapContainer b = o.toBitmap();
+			for (int i = 0; i<r.words.length; i++) {
+				r.words[i] &= b.words[i];
+			}
+			return r.recount();
+		}
+
+		Container andNot(Container o) {
+			if ( this instanceof ArrayContainer ) return ((ArrayContainer)this).filter(o, false);
+			BitmapContainer r = toBitmap();
+			BitmapContainer b = o.toBitmap();
+			for (int i = 0; i<r.words.length; i++) {
+				r.words[i] &= ~b.words[i];
+			}
+			return r.recount();
+		}
+
+		/** Return whichever of this or a run container is smaller */
+		Container optimize() {
+			RunContainer runs = RunContainer.from(this);
+			return runs.sizeInBytes()<sizeInBytes() ? runs : this;
+		}
+
+		static Container read(DataInputStream in) throws IOException {
+			byte type = in.readByte();
+			switch ( type ) {
+				case ARRAY : {
+					ArrayContainer c = new ArrayContainer(in.readChar()+1);
+					c.n = c.values.length;
+					for (int i = 0; i<c.n; i++) c.values[i] = in.readChar();
+					return c;
+				}
+				case BITMAP : {
+					BitmapContainer c = new BitmapContainer();
+					for (int i = 0; i<c.words.length; i++) c.words[i] = in.readLong();
+					return c.recount();
+				}
+				case RUN : {
+					int nruns = in.readChar();
+					RunContainer c = new RunContainer(new char[2*nruns], nruns);
+					for (int i = 0; i<2*nruns; i++) c.runs[i] = in.readChar();
+					c.recount();
+					return c;
+				}
+				default :
+					throw new IOException("bad container type "+type);
+			}
+		}
+	}
+
+	protected static class ArrayContainer extends Container {
+		char[] values;
+		int n;
+
+		ArrayContainer() { this(4); }
+
+		ArrayContainer(int capacity) { values = new char[capacity]; }
+
+		@Override
+		Container add(char x) {
+			int i = Arrays.binarySearch(values, 0, n, x);
+			if ( i>=0 ) return this;
+			if ( n==MAX_ARRAY_SIZE ) {
+				return toBitmap().add(x);
+			}
+			i = -(i+1);
+			if ( n==values.length ) {
+				values = Arrays.copyOf(values, Math.min(values.length*2, MAX_ARRAY_SIZE));
+			}
+			System.arraycopy(values, i, values, i+1, n-i);
+			values[i] = x;
+			n++;
+			return this;
+		}
+
+		@Override
+		Container remove(char x) {
+			int i = Arrays.binarySearch(values, 0, n, x);
+			if ( i<0 ) return this;
+			System.arraycopy(values, i+1, values, i, n-i-1);
+			n--;
+			return this;
+		}
+
+		@Override
+		boolean contains(char x) {
+			return Arrays.binarySearch(values, 0, n, x)>=0;
+		}
+
+		@Override
+		int cardinality() { return n; }
+
+		@Override
+		int nextValue(int from) {
+			if ( from>0xFFFF ) return -1;
+			int i = Arrays.binarySearch(values, 0, n, (char)from);
+			if ( i<0 ) i = -(i+1);
+			return i<n ? values[i] : -1;
+		}
+
+		@Override
+		void forEach(int base, IntConsumer action) {
+			for (int i = 0; i<n; i++) {
+				action.accept(base | values[i]);
+			}
+		}
+
+		@Override
+		BitmapContainer toBitmap() {
+			BitmapContainer b = new BitmapContainer();
+			for (int i = 0; i<n; i++) {
+				b.words[values[i] >>> 6] |= 1L << values[i];
+			}
+			b.n = n;
+			return b;
+		}
+
+		/** Merge two sorted arrays known to fit in an array container */
+		ArrayContainer or(ArrayContainer o) {
+			ArrayContainer r = new ArrayContainer(Math.max(n+o.n, 1));
+			int i = 0, j = 0, k = 0;
+			while ( i<n || j<o.n ) {
+				char v;
+				if ( j>=o.n || (i<n && values[i]<o.values[j]) ) v = values[i++];
+				else if ( i>=n || o.values[j]<values[i] ) v = o.values[j++];
+				else { v = values[i++]; j++; }
+				r.values[k++] = v;
+			}
+			r.n = k;
+			return r;
+		}
+
+		/** Keep values that are (keep=true) or aren't in o */
+		ArrayContainer filter(Container o, boolean keep) {
+			ArrayContainer r = new ArrayContainer(Math.max(n, 1));
+			for (int i = 0; i<n; i++) {
+				if ( o.contains(values[i])==keep ) r.values[r.n++] = values[i];
+			}
+			return r;
+		}
+
+		@Override
+		Container copy() {
+			ArrayContainer c = new ArrayContainer(Math.max(n, 1));
+			System.arraycopy(values, 0, c.values, 0, n);
+			c.n = n;
+			return c;
+		}
+
+		@Override
+		long sizeInBytes() { return 2L*n; }
+
+		@Override
+		void write(DataOutputStream out) throws IOException {
+			out.writeByte(ARRAY);
+			out.writeChar(n-1);
+			for (int i = 0; i<n; i++) out.writeChar(values[i]);
+		}
+	}
+
+	protected static class BitmapContainer extends Container {
+		final long[] words = new long[1024];
+		int n;
+
+		@Override
+		Container add(char x) {
+			long bit = 1L << x;
+			if ( (words[x >>> 6] & bit)==0 ) {
+				words[x >>> 6] |= bit;
+				n++;
+			}
+			return this;
+		}
+
+		@Override
+		Container remove(char x) {
+			long bit = 1L << x;
+			if ( (words[x >>> 6] & bit)!=0 ) {
+				words[x >>> 6] &= ~bit;
+				n--;
+				if ( n<=MAX_ARRAY_SIZE ) return toArray();
+			}
+			return this;
+		}
+
+		@Override
+		boolean contains(char x) {
+			return (words[x >>> 6] & (1L << x))!=0;
+		}
+
+		@Override
+		int cardinality() { return n; }
+
+		@Override
+		int nextValue(int from) {
+			if ( from>0xFFFF ) return -1;
+			int w = from >>> 6;
+			long word = words[w] & (-1L << from);
+			while ( true ) {
+				if ( word!=0 ) return w*64 + Long.numberOfTrailingZeros(word);
+				if ( ++w==words.length ) return -1;
+				word = words[w];
+			}
+		}
+
+		@Override
+		void forEach(int base, IntConsumer action) {
+			for (int w = 0; w<words.length; w++) {
+				long word = words[w];
+				while ( word!=0 ) {
+					action.accept(base | (w*64 + Long.numberOfTrailingZeros(word)));
+					word &= word-1;
+				}
+			}
+		}
+
+		@Override
+		BitmapContainer toBitmap() {
+			return (BitmapContainer)copy();
+		}
+
+		ArrayContainer toArray() {
+			ArrayContainer a = new ArrayContainer(Math.max(n, 1));
+			forEach(0, v -> a.values[a.n++] = (char)v);
+			return a;
+		}
+
+		/** Recompute cardinality after word ops and shrink to array if small */
+		Container recount() {
+			int c = 0;
+			for (long w : words) c += Long.bitCount(w);
+			n = c;
+			return n<=MAX_ARRAY_SIZE ? toArray() : this;
+		}
+
+		@Override
+		Container copy() {
+			BitmapContainer b = new BitmapContainer();
+			System.arraycopy(words, 0, b.words, 0, words.length);
+			b.n = n;
+			return b;
+		}
+
+		@Override
+		long sizeInBytes() { return 8L*words.length; }
+
+		@Override
+		void write(DataOutputStream out) throws IOException {
+			out.writeByte(BITMAP);
+			for (long w : words) out.writeLong(w);
+		}
+	}
+
+	/** Members as sorted, non-adjacent runs; runs[2i] is a start and
+	 *  runs[2i+1] is run length minus one. Adding to or removing from a run
+	 *  container converts it back to an array or bitmap first.
+	 */
+	protected static class RunContainer extends Container {
+		final char[] runs;
+		final int nruns;
+		int n;
+
+		RunContainer(char[] runs, int nruns) {
+			this.runs = runs;
+			this.nruns = nruns;
+		}
+
+		static RunContainer from(Container c) {
+			char[] runs = new char[16];
+			int nruns = 0;
+			for (int v = c.nextValue(0); v>=0; ) {
+				int end = v;
+				while ( end<0xFFFF && c.contains((char)(end+1)) ) end++;
+				if ( 2*nruns==runs.length ) runs = Arrays.copyOf(runs, runs.length*2);
+				runs[2*nruns] = (char)v;
+				runs[2*nruns+1] = (char)(end-v);
+				nruns++;
+				v = c.nextValue(end+1);
+			}
+			RunContainer r = new RunContainer(Arrays.copyOf(runs, 2*nruns), nruns);
+			r.n = c.cardinality();
+			return r;
+		}
+
+		void recount() {
+			int c = 0;
+			for (int i = 0; i<nruns; i++) c += runs[2*i+1]+1;
+			n = c;
+		}
+
+		Container unpack() {
+			Container c = n>MAX_ARRAY_SIZE ? toBitmap() : new ArrayContainer(Math.max(n, 1));
+			if ( c instanceof ArrayContainer ) {
+				ArrayContainer a = (ArrayContainer)c;
+				forEach(0, v -> a.values[a.n++] = (char)v);
+			}
+			return c;
+		}
+
+		@Override
+		Container add(char x) {
+			return contains(x) ? this : unpack().add(x);
+		}
+
+		@Override
+		Container remove(char x) {
+			return contains(x) ? unpack().remove(x) : this;
+		}
+
+		/** Index of the run whose start is <= x, or -1 */
+		int run(int x) {
+			int lo = 0, hi = nruns-1, r = -1;
+			while ( lo<=hi ) {
+				int mid = (lo+hi) >>> 1;
+				if ( runs[2*mid]<=x ) { r = mid; lo = mid+1; }
+				else hi = mid-1;
+			}
+			return r;
+		}
+
+		@Override
+		boolean contains(char x) {
+			int r = run(x);
+			return r>=0 && x<=runs[2*r]+runs[2*r+1];
+		}
+
+		@Override
+		int cardinality() { return n; }
+
+		@Override
+		int nextValue(int from) {
+			if ( from>0xFFFF ) return -1;
+			int r = run(from);
+			if ( r>=0 && from<=runs[2*r]+runs[2*r+1] ) return from;
+			r++;
+			return r<nruns ? runs[2*r] : -1;
+		}
+
+		@Override
+		void forEach(int base, IntConsumer action) {
+			for (int i = 0; i<nruns; i++) {
+				int start = runs[2*i];
+				int end = start+runs[2*i+1];
+				for (int v = start; v<=end; v++) action.accept(base | v);
+			}
+		}
+
+		@Override
+		BitmapContainer toBitmap() {
+			BitmapContainer b = new BitmapContainer();
+			forEach(0, v -> b.words[v >>> 6] |= 1L << v);
+			b.n = n;
+			return b;
+		}
+
+		@Override
+		Container copy() {
+			RunContainer c = new RunContainer(Arrays.copyOf(runs, 2*nruns), nruns);
+			c.n = n;
+			return c;
+		}
+
+		@Override
+		Container optimize() { return this; }
+
+		@Override
+		long sizeInBytes() { return 4L*nruns; }
+
+		@Override
+		void write(DataOutputStream out) throws IOException {
+			out.writeByte(RUN);
+			out.writeChar(nruns);
+			for (int i = 0; i<2*nruns; i++) out.writeChar(runs[i]);
+		}
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static us.parr.lib.ParrtMath.log2;
+
+/** Count how many of each key we have from many threads at once. Each key
+ *  gets a {@link LongAdder} so threads hammering the same hot key
+ *  update separate cells rather than fighting over one CAS. The key table is
+ *  a {@link ConcurrentHashMap} so adding a key already present takes no lock.
+ *
+ *  Aggregate queries like total(), argmax(), entropy(), and iteration are
+ *  weakly consistent: they never block writers but may or may not reflect
+ *  adds that happen while they run. set() and remove() swap out a key's
+ *  counter, so add()s of that same key racing with them may be lost.
+ */
+public class ConcurrentCountingSet<T> implements CountingSet<T> {
+	protected final ConcurrentHashMap<T, LongAdder> data;
+
+	public ConcurrentCountingSet() {
+		data = new ConcurrentHashMap<>();
+	}
+
+	public ConcurrentCountingSet(int expectedSize) {
+		data = new ConcurrentHashMap<>(expectedSize);
+	}
+
+	public ConcurrentCountingSet(CountingSet<T> old) {
+		this(old.size());
+		for (T key : old.keySet()) {
+			add(key, old.count(key));
+		}
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return data.containsKey(o);
+	}
+
+	@Override
+	public int count(T key) {
+		LongAdder value = data.get(key);
+		if ( value==null ) return 0;
+		return value.intValue();
+	}
+
+	@Override
+	public boolean add(T key) {
+		return add(key, 1);
+	}
+
+	/** Add n to the count for key; return true if this call created key */
+	public boolean add(T key, int n) {
+		LongAdder counter = data.get(key); // fast path avoids computeIfAbsent locking bin
+		boolean isNew = false;
+		if ( counter==null ) {
+			LongAdder fresh = new LongAdder();
+			counter = data.putIfAbsent(key, fresh);
+			if ( counter==null ) {
+				counter = fresh;
+				isNew = true;
+			}
+		}
+		counter.add(n);
+		return isNew;
+	}
+
+	/** Replace key's counter; adds racing with this call against the old
+	 *  counter are lost.
+	 */
+	@Override
+	public void set(T key, int count) {
+		LongAdder counter = new LongAdder();
+		counter.add(count);
+		data.put(key, counter);
+	}
+
+	/** Weakly consistent sum of all counts. We sum the counters rather than
+	 *  keep a running total because an add() that lands on a counter just
+	 *  swapped out by set() or remove() would leave a running total off
+	 *  for good.
+	 */
+	@Override
+	public int total() {
+		long t = 0;
+		for (LongAdder v : data.values()) {
+			t += v.sum();
+		}
+		return (int)t;
+	}
+
+	@Override
+	public int size() {
+		return data.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return data.isEmpty();
+	}
+
+	@Override
+	public List<Integer> counts() {
+		List<Integer> counts = new ArrayList<>(data.size());
+		for (LongAdder v : data.values()) {
+			counts.add(v.intValue());
+		}
+		return counts;
+	}
+
+	/** Return a new set containing this[i]-x[i] for all keys i. Values in x
+	 *  but not in this are ignored.  Values in this but not in x yield this's same value
+	 *  in the result.
+	 */
+	@Override
+	public ConcurrentCountingSet<T> minus(CountingSet<T> x) {
+		ConcurrentCountingSet<T> r = new ConcurrentCountingSet<>(data.size());
+		data.forEach((key, v) -> {
+			int c = v.intValue();
+			if ( x.contains(key) ) c -= x.count(key);
+			r.add(key, c);
+		});
+		return r;
+	}
+
+	/** Merge without building a CountingSetEntry per key */
+	@Override
+	public boolean addAll(CountingSet<? extends T> c) {
+		boolean isNew = false;
+		if ( c instanceof ConcurrentCountingSet ) {
+			ConcurrentCountingSet<? extends T> o = (ConcurrentCountingSet<? extends T>)c;
+			for (Map.Entry<? extends T, LongAdder> e : o.data.entrySet()) {
+				if ( add(e.getKey(), e.getValue().intValue()) ) isNew = true;
+			}
+			return isNew;
+		}
+		return addCounts(c);
+	}
+
+	/** Add c's counts with one atomic add() per key; see CountingHashSet.addCounts() */
+	protected <K extends T> boolean addCounts(CountingSet<K> c) {
+		boolean isNew = false;
+		for (K key : c.keySet()) {
+			if ( add(key, c.count(key)) ) isNew = true;
+		}
+		return isNew;
+	}
+
+	/** Weakly consistent; null if empty */
+	@Override
+	public T argmax() {
+		T keyOfMax = null;
+		long max = Long.MIN_VALUE;
+		for (Map.Entry<T, LongAdder> e : data.entrySet()) {
+			long c = e.getValue().sum();
+			if ( keyOfMax==null || c>max ) {
+				keyOfMax = e.getKey();
+				max = c;
+			}
+		}
+		return keyOfMax;
+	}
+
+	/** Weakly consistent; computes its own total from the same pass over
+	 *  the counts so probabilities sum to 1 even while others add.
+	 */
+	@Override
+	public double entropy() {
+		long[] snapshot = new long[data.size()+16]; // table may grow under us
+		int m = 0;
+		long n = 0;
+		for (LongAdder v : data.values()) {
+			if ( m==snapshot.length ) snapshot = Arrays.copyOf(snapshot, m*2);
+			long c = v.sum();
+			snapshot[m++] = c;
+			n += c;
+		}
+		double entropy = 0.0;
+		for (int i = 0; i<m; i++) {
+			if ( snapshot[i]==0 ) continue; // avoid log(0), which is undefined
+			double p = ((double)snapshot[i]) / n;
+			entropy += p * log2(p);
+		}
+		entropy = -entropy;
+		return entropy;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		int n = 0;
+		for (Map.Entry<T, LongAdder> e : data.entrySet()) {
+			if ( n>0 ) buf.append(", ");
+			buf.append(String.format("%s:%d", e.getKey(), e.getValue().intValue()));
+			n++;
+		}
+		buf.append("}");
+		return buf.toString();
+	}
+
+	// satisfy the Set interface
+
+	@Override
+	public Set<T> keySet() {
+		return data.keySet();
+	}
+
+	/** Weakly consistent view; each entry is a snapshot of that key's count */
+	@Override
+	public Set<Map.Entry<T, Integer>> entrySet() {
+		return new AbstractSet<Map.Entry<T, Integer>>() {
+			@Override
+			public Iterator<Map.Entry<T, Integer>> iterator() {
+				Iterator<Map.Entry<T, LongAdder>> it = data.entrySet().iterator();
+				return new Iterator<Map.Entry<T, Integer>>() {
+					@Override
+					public boolean hasNext() { return it.hasNext(); }
+					@Override
+					public Map.Entry<T, Integer> next() {
+						Map.Entry<T, LongAdder> e = it.next();
+						return new CountingSetEntry<>(e.getKey(), e.getValue().intValue());
+					}
+				};
+			}
+			@Override
+			public int size() { return data.size(); }
+		};
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return data.remove(o)!=null;
+	}
+
+	@Override
+	public void clear() {
+		data.clear();
+	}
+
+	/** Weakly consistent; iterates in table order */
+	@Override
+	public Iterator<T> iterator() {
+		return data.keySet().iterator();
+	}
+
+	@Override
+	public Object[] toArray() {
+		return data.keySet().toArray();
+	}
+
+	@Override
+	public <T1> T1[] toArray(T1[] a) {
+		return data.keySet().toArray(a);
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+".containsAll");
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+".retainAll");
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+".removeAll");
+	}
+}
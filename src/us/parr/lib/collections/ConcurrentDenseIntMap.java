@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+
+/** A thread-safe {@link DenseIntMap}: value for key i is in slot i of an
+ *  AtomicReferenceArray, updated with CAS so no operation takes a lock. A
+ *  get() is a volatile read of one slot.
+ *
+ *  When a key is past the end of the table, we double it (or more). Any
+ *  thread that bumps into the resize helps copy chunks of slots to the new
+ *  table. A slot being copied is first frozen so writers can't change it
+ *  mid-copy, then replaced by a Forward that points readers and writers at
+ *  the new table. Writers never wait for a resize: they help finish copying
+ *  the one slot they need or go straight to the new table. Whoever copies
+ *  the last chunk makes the new table current. size() and forEach() are
+ *  weakly consistent.
+ */
+public class ConcurrentDenseIntMap<T> {
+	/** Number of slots a thread claims at a time while copying */
+	protected static final int TRANSFER_CHUNK = 1024;
+
+	/** A removed key; unlike null, a late copier can't overwrite it */
+	protected static final Object TOMBSTONE = new Object();
+
+	/** Marks a slot that has been copied to next; also tracks copy progress */
+	protected static final class Forward {
+		final AtomicReferenceArray<Object> old;
+		final AtomicReferenceArray<Object> next;
+		final int nchunks;
+		final AtomicInteger nextChunk = new AtomicInteger();
+		final AtomicInteger chunksDone = new AtomicInteger();
+
+		Forward(AtomicReferenceArray<Object> old, int newLength) {
+			this.old = old;
+			this.next = new AtomicReferenceArray<>(newLength);
+			this.nchunks = Math.max(1, (old.length() + TRANSFER_CHUNK - 1) / TRANSFER_CHUNK);
+		}
+	}
+
+	/** Marks a slot whose value is being copied to f.next */
+	protected static final class Frozen {
+		final Object value;
+		final Forward f;
+
+		Frozen(Object value, Forward f) {
+			this.value = value;
+			this.f = f;
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	protected static final AtomicReferenceFieldUpdater<ConcurrentDenseIntMap, AtomicReferenceArray> TABLE =
+		AtomicReferenceFieldUpdater.newUpdater(ConcurrentDenseIntMap.class, AtomicReferenceArray.class, "table");
+
+	protected volatile AtomicReferenceArray<Object> table;
+
+	/** Non-null while a resize is underway */
+	protected final AtomicReference<Forward> resizing = new AtomicReference<>();
+
+	protected final LongAdder size = new LongAdder();
+
+	public ConcurrentDenseIntMap(int initialMaxKeyValue) {
+		table = new AtomicReferenceArray<>(initialMaxKeyValue+1);
+	}
+
+	public ConcurrentDenseIntMap() {
+		this(10);
+	}
+
+	public T get(int key) {
+		if ( key<0 ) return null;
+		AtomicReferenceArray<Object> t = tableFor(key);
+		if ( t==null ) return null;
+		Object v = t.get(key);
+		while ( v instanceof Forward ) { // slot has moved; look in the newer table
+			t = ((Forward)v).next;
+			v = t.get(key);
+		}
+		if ( v instanceof Frozen ) v = ((Frozen)v).value;
+		return valueOf(v);
+	}
+
+	public boolean containsKey(int key) {
+		return get(key)!=null;
+	}
+
+	/** Map key to value and return the old value or null; a null value removes key */
+	public T put(int key, T value) {
+		return update(key, value, false);
+	}
+
+	/** Map key to value unless it has a value already; return existing value or null */
+	public T putIfAbsent(int key, T value) {
+		Objects.requireNonNull(value);
+		return update(key, value, true);
+	}
+
+	/** Return key's value, first mapping it to f(key) if absent. Without
+	 *  locks, racing threads might each call f but only one result is kept
+	 *  and returned to all of them.
+	 */
+	public T computeIfAbsent(int key, IntFunction<? extends T> f) {
+		T v = get(key);
+		if ( v!=null ) return v;
+		T computed = f.apply(key);
+		if ( computed==null ) return null;
+		T existing = putIfAbsent(key, computed);
+		return existing!=null ? existing : computed;
+	}
+
+	public T remove(int key) {
+		if ( key<0 ) return null;
+		return update(key, null, false);
+	}
+
+	/** Weakly consistent; exact only when no other thread is updating */
+	public int size() {
+		return size.intValue();
+	}
+
+	public boolean isEmpty() {
+		return size()==0;
+	}
+
+	/** Number of slots in the current table */
+	public int length() {
+		return table.length();
+	}
+
+	/** Weakly consistent, ascending key order */
+	public void forEach(BiConsumer<? super Integer, ? super T> action) {
+		Objects.requireNonNull(action);
+		int len = table.length();
+		for (int i = 0; i<len; i++) {
+			T v = get(i);
+			if ( v!=null ) action.accept(i, v);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		forEach((k, v) -> {
+			if ( buf.length()>1 ) buf.append(", ");
+			buf.append(k);
+			buf.append("=");
+			buf.append(v);
+		});
+		buf.append("}");
+		return buf.toString();
+	}
+
+	// table support
+
+	protected T update(int key, T value, boolean onlyIfAbsent) {
+		if ( key<0 ) {
+			throw new IllegalArgumentException("keys must be non-negative: "+key);
+		}
+		AtomicReferenceArray<Object> t = table;
+		while ( true ) {
+			if ( key>=t.length() ) {
+				if ( value==null ) { // removing; only a table being filled might have key
+					t = tableFor(key);
+					if ( t==null ) return null;
+				}
+				else {
+					t = grow(t, key);
+				}
+				continue;
+			}
+			Object cur = t.get(key);
+			if ( cur instanceof Forward ) {
+				t = ((Forward)cur).next;
+				continue;
+			}
+			if ( cur instanceof Frozen ) { // finish copying this slot so we can write the new table
+				Forward f = ((Frozen)cur).f;
+				copySlot(f, key);
+				t = f.next;
+				continue;
+			}
+			T prev = valueOf(cur);
+			if ( onlyIfAbsent && prev!=null ) return prev;
+			if ( prev==null && value==null ) return null;
+			if ( t.compareAndSet(key, cur, value!=null ? value : TOMBSTONE) ) {
+				if ( prev==null ) size.increment();
+				else if ( value==null ) size.decrement();
+				return prev;
+			}
+		}
+	}
+
+	/** Return the current table if key fits, else the table a resize is
+	 *  filling if key fits there, else null.
+	 */
+	protected AtomicReferenceArray<Object> tableFor(int key) {
+		while ( true ) {
+			AtomicReferenceArray<Object> t = table;
+			if ( key<t.length() ) return t;
+			Forward f = resizing.get();
+			if ( table!=t ) continue;
+			if ( f==null || f.old!=t || key>=f.next.length() ) return null;
+			return f.next;
+		}
+	}
+
+	/** Return a table bigger than t that can hold key, which might be one
+	 *  still being filled; keys past t's end need no copying so that's ok.
+	 */
+	protected AtomicReferenceArray<Object> grow(AtomicReferenceArray<Object> t, int key) {
+		while ( true ) {
+			Forward f = resizing.get();
+			AtomicReferenceArray<Object> cur = table; // read after f so f.old==t means f is live
+			if ( cur!=t ) return cur; // somebody else already grew it
+			if ( f==null ) {
+				f = new Forward(t, Math.max(key+1, t.length()*2));
+				if ( !resizing.compareAndSet(null, f) ) continue;
+				if ( table!=t ) { // another resize finished between our reads; back out
+					resizing.compareAndSet(f, null);
+					continue;
+				}
+			}
+			else if ( f.old!=t ) { // f is finished or being backed out; clear it for them
+				resizing.compareAndSet(f, null);
+				continue;
+			}
+			if ( key<f.next.length() ) {
+				helpTransfer(f);
+				return f.next;
+			}
+			finishTransfer(f); // f is too small for key; we need the resize after it
+		}
+	}
+
+	/** Copy chunks of the old table until all are claimed; don't wait for
+	 *  other copiers. Whoever finishes the last chunk publishes the new table.
+	 */
+	protected void helpTransfer(Forward f) {
+		int c;
+		while ( (c = f.nextChunk.getAndIncrement()) < f.nchunks ) {
+			int hi = Math.min(f.old.length(), (c+1)*TRANSFER_CHUNK);
+			for (int i = c*TRANSFER_CHUNK; i<hi; i++) {
+				copySlot(f, i);
+			}
+			if ( f.chunksDone.incrementAndGet()==f.nchunks ) {
+				publish(f);
+			}
+		}
+	}
+
+	/** Copy whatever slots other copiers haven't yet, then publish */
+	protected void finishTransfer(Forward f) {
+		helpTransfer(f);
+		for (int i = 0; i<f.old.length(); i++) {
+			copySlot(f, i);
+		}
+		publish(f);
+	}
+
+	protected void publish(Forward f) {
+		TABLE.compareAndSet(this, f.old, f.next);
+		resizing.compareAndSet(f, null);
+	}
+
+	/** Move slot i of f.old to f.next unless it's already moved. Any number
+	 *  of threads can copy the same slot: freezing it stops writers, only
+	 *  the first copy lands in an empty slot of next, and writers only touch
+	 *  next once the slot is forwarded. Removes leave a TOMBSTONE, not null,
+	 *  so a late copier can't bring back a removed value.
+	 */
+	protected static void copySlot(Forward f, int i) {
+		AtomicReferenceArray<Object> old = f.old;
+		while ( true ) {
+			Object v = old.get(i);
+			if ( v==f ) return;
+			Frozen frozen;
+			if ( v instanceof Frozen ) {
+				frozen = (Frozen)v;
+			}
+			else if ( v==null || v==TOMBSTONE ) { // nothing to copy
+				if ( old.compareAndSet(i, v, f) ) return;
+				continue;
+			}
+			else {
+				frozen = new Frozen(v, f);
+				if ( !old.compareAndSet(i, v, frozen) ) continue;
+			}
+			f.next.compareAndSet(i, null, frozen.value);
+			old.compareAndSet(i, frozen, f);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	protected T valueOf(Object v) {
+		return v==TOMBSTONE ? null : (T)v;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/** A thread-safe {@link DoubleKeyMap} for sharing a memo table across
+ *  threads, built from a ConcurrentHashMap of ConcurrentHashMaps. Reads
+ *  never block. Updates lock at most one bin of the inner map for their
+ *  key1, so threads working on different key1s don't contend.
+ *
+ *  remove(k1) drops all entries for k1 at once by unlinking its inner map.
+ *  An update that raced with that and landed in the unlinked map notices
+ *  and retries against the current one. remove(k1,k2) leaves k1's inner
+ *  map in place even if it becomes empty; unlinking it there could lose a
+ *  concurrent put to the same k1. So keySet() can include primary keys
+ *  with no entries until remove(k1). Null keys and values aren't allowed.
+ */
+public class ConcurrentDoubleKeyMap<Key1, Key2, Value> {
+	protected final ConcurrentHashMap<Key1, ConcurrentHashMap<Key2, Value>> data = new ConcurrentHashMap<>();
+
+	public Value put(Key1 k1, Key2 k2, Value v) {
+		while ( true ) {
+			ConcurrentHashMap<Key2, Value> data2 = innerMap(k1);
+			Value prev = data2.put(k2, v);
+			if ( data.get(k1)==data2 ) return prev;
+		}
+	}
+
+	/** Map (k1,k2) to v unless it has a value already; return existing value or null */
+	public Value putIfAbsent(Key1 k1, Key2 k2, Value v) {
+		while ( true ) {
+			ConcurrentHashMap<Key2, Value> data2 = innerMap(k1);
+			Value prev = data2.putIfAbsent(k2, v);
+			if ( data.get(k1)==data2 ) return prev;
+		}
+	}
+
+	/** Return the value for (k1,k2), first mapping it to f(k1,k2) if absent.
+	 *  f is called at most once per (k1,k2) unless a concurrent remove(k1)
+	 *  discards its result.
+	 */
+	public Value computeIfAbsent(Key1 k1, Key2 k2, BiFunction<? super Key1, ? super Key2, ? extends Value> f) {
+		while ( true ) {
+			ConcurrentHashMap<Key2, Value> data2 = innerMap(k1);
+			Value v = data2.get(k2); // fast path doesn't lock the bin
+			if ( v==null ) v = data2.computeIfAbsent(k2, k -> f.apply(k1, k));
+			if ( data.get(k1)==data2 ) return v;
+		}
+	}
+
+	public Value get(Key1 k1, Key2 k2) {
+		Map<Key2, Value> data2 = data.get(k1);
+		if ( data2==null ) return null;
+		return data2.get(k2);
+	}
+
+	/** Live, thread-safe map of key2 to value for k1, or null if none */
+	public Map<Key2, Value> get(Key1 k1) { return data.get(k1); }
+
+	public boolean containsKey(Key1 k1, Key2 k2) {
+		return get(k1, k2)!=null;
+	}
+
+	public Value remove(Key1 k1, Key2 k2) {
+		Map<Key2, Value> data2 = data.get(k1);
+		if ( data2==null ) return null;
+		return data2.remove(k2);
+	}
+
+	/** Remove all entries for primary key; return them or null if none */
+	public Map<Key2, Value> remove(Key1 k1) {
+		return data.remove(k1);
+	}
+
+	/** Get all values associated with primary key */
+	public Collection<Value> values(Key1 k1) {
+		Map<Key2, Value> data2 = data.get(k1);
+		if ( data2==null ) return null;
+		return data2.values();
+	}
+
+	/** get all primary keys, including any whose entries were all removed */
+	public Set<Key1> keySet() {
+		return data.keySet();
+	}
+
+	/** get all secondary keys associated with a primary key */
+	public Set<Key2> keySet(Key1 k1) {
+		Map<Key2, Value> data2 = data.get(k1);
+		if ( data2==null ) return null;
+		return data2.keySet();
+	}
+
+	/** Number of (key1, key2) entries; weakly consistent */
+	public int size() {
+		int n = 0;
+		for (Map<Key2, Value> data2 : data.values()) {
+			n += data2.size();
+		}
+		return n;
+	}
+
+	public boolean isEmpty() {
+		for (Map<Key2, Value> data2 : data.values()) {
+			if ( !data2.isEmpty() ) return false;
+		}
+		return true;
+	}
+
+	public void clear() {
+		data.clear();
+	}
+
+	@Override
+	public String toString() {
+		return data.toString();
+	}
+
+	/** Find or atomically create the inner map for k1 */
+	protected ConcurrentHashMap<Key2, Value> innerMap(Key1 k1) {
+		ConcurrentHashMap<Key2, Value> data2 = data.get(k1);
+		if ( data2!=null ) return data2;
+		return data.computeIfAbsent(k1, k -> new ConcurrentHashMap<>());
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/** A thread-safe MultiMap that many threads can fill at once. Keys live in
+ *  a ConcurrentHashMap and each key's values in a concurrent collection,
+ *  a lock-free ConcurrentLinkedQueue by default, so put() is an atomic
+ *  per-key append and readers never block. Iteration is weakly consistent:
+ *  it never throws ConcurrentModificationException and sees some or all of
+ *  the updates made while it runs.
+ *
+ *  If asked, we also remember the order in which keys first appeared so
+ *  keySet() iterates like the LinkedHashMap in {@link BaseMultiMap}. Each
+ *  key gets a sequence number in the same atomic step that adds it to the
+ *  map, and keySet() sorts by sequence number when it starts iterating.
+ */
+public class ConcurrentMultiMap<K, V> implements MultiMap<K, V> {
+	protected final ConcurrentHashMap<K, Collection<V>> data = new ConcurrentHashMap<>();
+
+	/** Creates a concurrent collection for each new key */
+	protected final Supplier<? extends Collection<V>> valueCollections;
+
+	/** Sequence number of each key's first put; null if we don't preserve key order */
+	protected final ConcurrentHashMap<K, Long> keyOrder;
+
+	protected final AtomicLong nextKeyOrder = new AtomicLong();
+
+	public ConcurrentMultiMap() {
+		this(false);
+	}
+
+	public ConcurrentMultiMap(boolean preserveKeyOrder) {
+		this(preserveKeyOrder, ConcurrentLinkedQueue::new);
+	}
+
+	/** valueCollections must create thread-safe collections, such as
+	 *  ConcurrentHashMap.newKeySet() for a multimap of sets.
+	 */
+	public ConcurrentMultiMap(boolean preserveKeyOrder, Supplier<? extends Collection<V>> valueCollections) {
+		this.valueCollections = valueCollections;
+		this.keyOrder = preserveKeyOrder ? new ConcurrentHashMap<>() : null;
+	}
+
+	/** A multimap whose values per key are a concurrent set */
+	public static <K, V> ConcurrentMultiMap<K, V> ofSets(boolean preserveKeyOrder) {
+		return new ConcurrentMultiMap<>(preserveKeyOrder, ConcurrentHashMap::newKeySet);
+	}
+
+	@Override
+	public Collection<V> get(K key) {
+		return data.get(key);
+	}
+
+	@Override
+	public void put(K key, V value) {
+		valuesFor(key).add(value);
+	}
+
+	/** Add all values to key with one key lookup */
+	public void putAll(K key, Collection<? extends V> values) {
+		if ( values.isEmpty() ) return;
+		valuesFor(key).addAll(values);
+	}
+
+	/** Group entries by key first so each key is looked up once */
+	public void putAll(Iterable<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		Map<K, List<V>> batches = new HashMap<>();
+		for (Map.Entry<? extends K, ? extends V> e : entries) {
+			batches.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).add(e.getValue());
+		}
+		batches.forEach(this::putAll);
+	}
+
+	public void putAll(MultiMap<K, V> m) {
+		for (Map.Entry<K, Collection<V>> e : m.entrySet()) {
+			putAll(e.getKey(), e.getValue());
+		}
+	}
+
+	/** Replace key's values with a concurrent copy of values */
+	@Override
+	public void set(K key, Collection<V> values) {
+		Collection<V> c = valueCollections.get();
+		c.addAll(values);
+		if ( keyOrder==null ) {
+			data.put(key, c);
+			return;
+		}
+		data.compute(key, (k, old) -> {
+			if ( old==null ) keyOrder.put(k, nextKeyOrder.getAndIncrement());
+			return c;
+		});
+	}
+
+	@Override
+	public int size() {
+		return data.size();
+	}
+
+	@Override
+	public boolean containsKey(K key) {
+		return data.containsKey(key);
+	}
+
+	@Override
+	public Collection<V> remove(K key) {
+		if ( keyOrder==null ) return data.remove(key);
+		List<Collection<V>> old = new ArrayList<>(1);
+		data.computeIfPresent(key, (k, c) -> {
+			keyOrder.remove(k);
+			old.add(c);
+			return null;
+		});
+		return old.isEmpty() ? null : old.get(0);
+	}
+
+	/** Not atomic; keys put during clear() might survive it */
+	@Override
+	public void clear() {
+		if ( keyOrder==null ) {
+			data.clear();
+			return;
+		}
+		for (K key : data.keySet()) { // remove one at a time so keyOrder stays in sync
+			remove(key);
+		}
+	}
+
+	/** Weakly consistent; in order of first put if we preserve key order */
+	@Override
+	public Set<K> keySet() {
+		if ( keyOrder==null ) return data.keySet();
+		return new AbstractSet<K>() {
+			@Override
+			public Iterator<K> iterator() {
+				List<Map.Entry<K, Long>> ordered = new ArrayList<>(keyOrder.entrySet());
+				ordered.sort(Map.Entry.comparingByValue());
+				return new Iterator<K>() {
+					Iterator<Map.Entry<K, Long>> it = ordered.iterator();
+					K next = advance();
+
+					K advance() { // skip keys removed since we sorted
+						while ( it.hasNext() ) {
+							K k = it.next().getKey();
+							if ( data.containsKey(k) ) return k;
+						}
+						return null;
+					}
+
+					@Override
+					public boolean hasNext() {
+						return next!=null;
+					}
+
+					@Override
+					public K next() {
+						if ( next==null ) throw new NoSuchElementException();
+						K k = next;
+						next = advance();
+						return k;
+					}
+				};
+			}
+
+			@Override
+			public int size() { return data.size(); }
+
+			@Override
+			public boolean contains(Object o) { return data.containsKey(o); }
+		};
+	}
+
+	/** Weakly consistent, in no particular order */
+	@Override
+	public Set<Map.Entry<K, Collection<V>>> entrySet() {
+		return data.entrySet();
+	}
+
+	/** Weakly consistent, in no particular order */
+	@Override
+	public Collection<Collection<V>> values() {
+		return data.values();
+	}
+
+	@Override
+	public String toString() {
+		return data.toString();
+	}
+
+	/** Find or atomically create the values for key */
+	protected Collection<V> valuesFor(K key) {
+		Collection<V> c = data.get(key); // fast path avoids locking key's bin
+		if ( c!=null ) return c;
+		return data.computeIfAbsent(key, k -> {
+			if ( keyOrder!=null ) keyOrder.put(k, nextKeyOrder.getAndIncrement());
+			return valueCollections.get();
+		});
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import us.parr.lib.ParrtStats;
+
+import java.util.Arrays;
+
+import static us.parr.lib.ParrtStats.clogc;
+
+/** Counts of (row, col) pairs, such as (feature value, class label), in
+ *  one flat int[rows*cols] array. This replaces a
+ *  MultiMapOfCountingSets<Integer,Integer>, which needs a map entry, a
+ *  counting set, and a MutableInt per cell. Row and column totals are
+ *  kept as counts change, so per-row and overall gini/entropy and
+ *  information gain are plain array arithmetic.
+ */
+public class ContingencyTable {
+	protected final int rows;
+	protected final int cols;
+
+	/** cells[row*cols+col] is the count for (row, col) */
+	protected final int[] cells;
+
+	protected final int[] rowTotals;
+	protected final int[] colTotals;
+	protected int total;
+
+	/** Count rows 0..maxRow by cols 0..maxCol */
+	public ContingencyTable(int maxRow, int maxCol) {
+		this.rows = maxRow+1;
+		this.cols = maxCol+1;
+		this.cells = new int[rows*cols];
+		this.rowTotals = new int[rows];
+		this.colTotals = new int[cols];
+	}
+
+	public ContingencyTable(ContingencyTable old) {
+		this.rows = old.rows;
+		this.cols = old.cols;
+		this.cells = Arrays.copyOf(old.cells, old.cells.length);
+		this.rowTotals = Arrays.copyOf(old.rowTotals, rows);
+		this.colTotals = Arrays.copyOf(old.colTotals, cols);
+		this.total = old.total;
+	}
+
+	public void add(int row, int col) {
+		add(row, col, 1);
+	}
+
+	public void add(int row, int col, int n) {
+		if ( row<0 || row>=rows || col<0 || col>=cols ) {
+			throw new IndexOutOfBoundsException("("+row+", "+col+") not in "+rows+"x"+cols+" table");
+		}
+		cells[row*cols+col] += n;
+		rowTotals[row] += n;
+		colTotals[col] += n;
+		total += n;
+	}
+
+	public int count(int row, int col) {
+		return cells[row*cols+col];
+	}
+
+	public int rowTotal(int row) {
+		return rowTotals[row];
+	}
+
+	public int colTotal(int col) {
+		return colTotals[col];
+	}
+
+	public int total() {
+		return total;
+	}
+
+	public int numRows() {
+		return rows;
+	}
+
+	public int numCols() {
+		return cols;
+	}
+
+	/** Return a copy of row's counts by column */
+	public int[] row(int row) {
+		return Arrays.copyOfRange(cells, row*cols, (row+1)*cols);
+	}
+
+	/** Entropy of the column distribution within row */
+	public double rowEntropy(int row) {
+		double clogc = 0.0;
+		for (int i = row*cols, end = i+cols; i<end; i++) {
+			clogc += clogc(cells[i]);
+		}
+		return ParrtStats.entropy(rowTotals[row], clogc);
+	}
+
+	/** Gini impurity of the column distribution within row */
+	public double rowGini(int row) {
+		long sq = 0;
+		for (int i = row*cols, end = i+cols; i<end; i++) {
+			sq += (long)cells[i]*cells[i];
+		}
+		return ParrtStats.gini(rowTotals[row], sq);
+	}
+
+	/** Entropy of the column totals, ignoring rows */
+	public double entropy() {
+		double clogc = 0.0;
+		for (int c : colTotals) {
+			clogc += clogc(c);
+		}
+		return ParrtStats.entropy(total, clogc);
+	}
+
+	/** Gini impurity of the column totals, ignoring rows */
+	public double gini() {
+		long sq = 0;
+		for (int c : colTotals) {
+			sq += (long)c*c;
+		}
+		return ParrtStats.gini(total, sq);
+	}
+
+	/** Entropy of column given row: sum over rows of rowTotal/total *
+	 *  rowEntropy(row), in one pass over the cells.
+	 */
+	public double conditionalEntropy() {
+		if ( total==0 ) return 0.0;
+		// sum_r n_r/N * (log2 n_r - sum_c n_rc ln n_rc / (n_r ln 2))
+		// == (sum_r n_r ln n_r - sum_rc n_rc ln n_rc) / (N ln 2)
+		double clogcCells = 0.0;
+		for (int c : cells) {
+			clogcCells += clogc(c);
+		}
+		double clogcRows = 0.0;
+		for (int r : rowTotals) {
+			clogcRows += clogc(r);
+		}
+		double h = (clogcRows - clogcCells) / (total * Math.log(2.0));
+		return h<0 ? 0.0 : h; // don't let rounding error go negative
+	}
+
+	/** How much knowing the row reduces column entropy */
+	public double informationGain() {
+		return entropy() - conditionalEntropy();
+	}
+
+	/** Gini of each row weighted by its share of the total */
+	public double weightedGini() {
+		if ( total==0 ) return 0.0;
+		double g = 0.0;
+		for (int r = 0; r<rows; r++) {
+			if ( rowTotals[r]>0 ) g += rowTotals[r] * rowGini(r);
+		}
+		return g / total;
+	}
+
+	/** How much knowing the row reduces column gini impurity */
+	public double giniGain() {
+		return gini() - weightedGini();
+	}
+
+	/** Add other's counts into this table; shapes must match */
+	public void merge(ContingencyTable other) {
+		if ( other.rows!=rows || other.cols!=cols ) {
+			throw new IllegalArgumentException("can't merge "+other.rows+"x"+other.cols+
+			                                   " table into "+rows+"x"+cols+" table");
+		}
+		for (int i = 0; i<cells.length; i++) {
+			cells[i] += other.cells[i];
+		}
+		for (int r = 0; r<rows; r++) {
+			rowTotals[r] += other.rowTotals[r];
+		}
+		for (int c = 0; c<cols; c++) {
+			colTotals[c] += other.colTotals[c];
+		}
+		total += other.total;
+	}
+
+	public void clear() {
+		Arrays.fill(cells, 0);
+		Arrays.fill(rowTotals, 0);
+		Arrays.fill(colTotals, 0);
+		total = 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		for (int r = 0; r<rows; r++) {
+			if ( rowTotals[r]==0 ) continue;
+			if ( buf.length()>1 ) buf.append(", ");
+			buf.append(r);
+			buf.append("=");
+			buf.append(Arrays.toString(row(r)));
+		}
+		buf.append("}");
+		return buf.toString();
+	}
+}
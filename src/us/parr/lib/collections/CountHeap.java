@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A heap bounded to k (key,count) pairs that retains the k largest (or
+ *  smallest) counts offered to it; O(n log k) for n offers. Keys are either
+ *  objects or ints (dense set indexes) so dense sets don't box anything.
+ *  The root is always the worst retained pair so a new pair only has to beat
+ *  the root to get in. Ties go to the pair offered first.
+ */
+class CountHeap {
+	protected final boolean largest;
+	protected final int k;
+	protected final int[] counts;
+	protected final int[] ids;
+	protected final Object[] keys;
+	protected int n = 0;
+
+	CountHeap(int k, boolean largest, boolean objectKeys) {
+		this.k = Math.max(k, 0);
+		this.largest = largest;
+		this.counts = new int[this.k];
+		this.ids = objectKeys ? null : new int[this.k];
+		this.keys = objectKeys ? new Object[this.k] : null;
+	}
+
+	void offer(Object key, int count) {
+		if ( k==0 ) return;
+		if ( n<k ) {
+			keys[n] = key;
+			counts[n] = count;
+			siftUp(n++);
+		}
+		else if ( worse(counts[0], count) ) {
+			keys[0] = key;
+			counts[0] = count;
+			siftDown(0);
+		}
+	}
+
+	void offer(int id, int count) {
+		if ( k==0 ) return;
+		if ( n<k ) {
+			ids[n] = id;
+			counts[n] = count;
+			siftUp(n++);
+		}
+		else if ( worse(counts[0], count) ) {
+			ids[0] = id;
+			counts[0] = count;
+			siftDown(0);
+		}
+	}
+
+	/** Drain heap into a list ordered best first */
+	@SuppressWarnings("unchecked")
+	<T> List<T> keys() {
+		Object[] sorted = new Object[n];
+		for (int i = n-1; i>=0; i--) {
+			sorted[i] = keys[0];
+			pop();
+		}
+		List<T> result = new ArrayList<>(sorted.length);
+		for (Object o : sorted) {
+			result.add((T)o);
+		}
+		return result;
+	}
+
+	/** Drain heap into an array of int keys ordered best first */
+	int[] ids() {
+		int[] sorted = new int[n];
+		for (int i = n-1; i>=0; i--) {
+			sorted[i] = ids[0];
+			pop();
+		}
+		return sorted;
+	}
+
+	/** Is count a worse than count b given which end we're retaining? */
+	protected boolean worse(int a, int b) {
+		return largest ? a<b : a>b;
+	}
+
+	protected void pop() {
+		n--;
+		move(n, 0);
+		if ( n>0 ) siftDown(0);
+	}
+
+	protected void siftUp(int i) {
+		while ( i>0 ) {
+			int parent = (i-1) >>> 1;
+			if ( !worse(counts[i], counts[parent]) ) break;
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	protected void siftDown(int i) {
+		while ( true ) {
+			int left = 2*i+1;
+			if ( left>=n ) break;
+			int child = left;
+			int right = left+1;
+			if ( right<n && worse(counts[right], counts[left]) ) child = right;
+			if ( !worse(counts[child], counts[i]) ) break;
+			swap(i, child);
+			i = child;
+		}
+	}
+
+	protected void move(int from, int to) {
+		counts[to] = counts[from];
+		if ( keys!=null ) {
+			keys[to] = keys[from];
+			keys[from] = null;
+		}
+		else ids[to] = ids[from];
+	}
+
+	protected void swap(int i, int j) {
+		int c = counts[i]; counts[i] = counts[j]; counts[j] = c;
+		if ( keys!=null ) {
+			Object o = keys[i]; keys[i] = keys[j]; keys[j] = o;
+		}
+		else {
+			int t = ids[i]; ids[i] = ids[j]; ids[j] = t;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import us.parr.lib.util.MurmurHash;
+
+import java.util.Arrays;
+
+/** Approximate the counting part of {@link CountingSet} (add, count, total)
+ *  in a fixed amount of memory no matter how many distinct keys we see.
+ *  A depth x width table of counters; each row hashes the key with a
+ *  different MurmurHash seed and count() is the min over the rows' cells.
+ *  count(key) never underestimates and, with probability 1-delta,
+ *  overestimates by at most epsilon*total().
+ *
+ *  With conservative update, add() only raises the cells that are at the
+ *  current min, which tightens the overestimate considerably for skewed
+ *  data. Such a sketch can't take negative increments.
+ *
+ *  Not thread safe; give each thread its own sketch with the same shape
+ *  and merge() them.
+ */
+public class CountMinSketch<T> {
+	/** Seeds for row hashes are derived from this so all sketches of the
+	 *  same shape hash identically and can be merged.
+	 */
+	public static final int SEED = 0x9E3779B9;
+
+	protected final int depth;
+	protected final int width;
+	protected final boolean conservative;
+
+	/** Row r, column c is table[r*width+c] */
+	protected final int[] table;
+
+	protected final int[] seeds;
+
+	protected long total;
+
+	/** Make a sketch whose estimates are within epsilon*total() of the
+	 *  true count with probability 1-delta.
+	 */
+	public CountMinSketch(double epsilon, double delta) {
+		this(epsilon, delta, false);
+	}
+
+	public CountMinSketch(double epsilon, double delta, boolean conservative) {
+		this((int)Math.ceil(Math.log(1/delta)), (int)Math.ceil(Math.E/epsilon), conservative);
+	}
+
+	public CountMinSketch(int depth, int width, boolean conservative) {
+		if ( depth<=0 || width<=0 ) {
+			throw new IllegalArgumentException("depth and width must be positive: "+depth+"x"+width);
+		}
+		this.depth = depth;
+		this.width = width;
+		this.conservative = conservative;
+		this.table = new int[depth*width];
+		this.seeds = new int[depth];
+		for (int r = 0; r<depth; r++) {
+			seeds[r] = MurmurHash.finish(MurmurHash.update(SEED, r), 1);
+		}
+	}
+
+	public void add(T key) {
+		add(key, 1);
+	}
+
+	public void add(T key, int n) {
+		int h = key!=null ? key.hashCode() : 0;
+		total += n;
+		if ( conservative ) {
+			if ( n<0 ) {
+				throw new IllegalArgumentException("conservative update can't subtract: "+n);
+			}
+			int est = Integer.MAX_VALUE;
+			for (int r = 0; r<depth; r++) {
+				est = Math.min(est, table[cell(r, h)]);
+			}
+			int target = est+n;
+			for (int r = 0; r<depth; r++) {
+				int i = cell(r, h);
+				if ( table[i]<target ) table[i] = target;
+			}
+		}
+		else {
+			for (int r = 0; r<depth; r++) {
+				table[cell(r, h)] += n;
+			}
+		}
+	}
+
+	/** Estimated number of times key was added; never less than true count */
+	public int count(T key) {
+		int h = key!=null ? key.hashCode() : 0;
+		int est = Integer.MAX_VALUE;
+		for (int r = 0; r<depth; r++) {
+			est = Math.min(est, table[cell(r, h)]);
+		}
+		return est;
+	}
+
+	/** How many total elements added including repeats; exact. */
+	public long total() {
+		return total;
+	}
+
+	/** Add other's counts into this sketch; both must have same shape */
+	public void merge(CountMinSketch<? extends T> other) {
+		if ( other.depth!=depth || other.width!=width ) {
+			throw new IllegalArgumentException("can't merge "+other.depth+"x"+other.width+
+			                                   " sketch into "+depth+"x"+width);
+		}
+		for (int i = 0; i<table.length; i++) {
+			table[i] += other.table[i];
+		}
+		total += other.total;
+	}
+
+	public void clear() {
+		Arrays.fill(table, 0);
+		total = 0;
+	}
+
+	/** With probability 1-delta, count() exceeds true count by no more than this */
+	public double errorBound() {
+		return Math.E / width * total;
+	}
+
+	public int getDepth() { return depth; }
+
+	public int getWidth() { return width; }
+
+	public boolean isConservative() { return conservative; }
+
+	protected int cell(int row, int keyHash) {
+		int h = MurmurHash.finish(MurmurHash.update(seeds[row], keyHash), 1);
+		return row*width + (h & 0x7FFFFFFF) % width;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("CountMinSketch(%dx%d, total=%d)", depth, width, total);
+	}
+}
@@ -13,29 +13,59 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 import static us.parr.lib.ParrtMath.log2;
 
-/** A set of positive (or zero-valued) integers. */
+/** A set of positive (or zero-valued) integers.
+ *
+ *  The total, number of keys, and argmax are maintained as set[] is
+ *  updated so total(), size(), isEmpty() don't scan set[]. argmax() only
+ *  rescans when the count of the current max key goes down.
+ */
 public class CountingDenseIntSet implements CountingSet<Integer> {
 	/** The set[i] is the number of times i appears in set; 0 implies not there. */
 	protected final int[] set;
 
+	/** Sum of set[i] for all i */
+	protected int total;
+
+	/** Number of i with set[i]>0 */
+	protected int n;
+
+	/** First i with max set[i]>0, or -1 if none; valid only if !maxDirty */
+	protected int maxIndex = -1;
+
+	/** Set when the max count decreases and we must rescan to find argmax */
+	protected boolean maxDirty;
+
 	public CountingDenseIntSet(int maxSetValue) {
 		set = new int[maxSetValue+1];
 	}
 
 	public CountingDenseIntSet(CountingSet<Integer> old) {
 		if ( old instanceof CountingDenseIntSet ) {
-			int[] oldset = ((CountingDenseIntSet) old).set;
-			this.set = Arrays.copyOf(oldset, oldset.length);
+			CountingDenseIntSet o = (CountingDenseIntSet)old;
+			this.set = Arrays.copyOf(o.set, o.set.length);
+			this.total = o.total;
+			this.n = o.n;
+			this.maxIndex = o.maxIndex;
+			this.maxDirty = o.maxDirty;
 		}
 		else {
-			this.set = new int[old.size()];
+			int max = -1;
+			for (Integer key : old.keySet()) {
+				max = Math.max(max, key);
+			}
+			this.set = new int[max+1];
 			for (Integer key : old.keySet()) {
 				set[key] = old.count(key);
 			}
+			recount();
 		}
 	}
 
@@ -53,8 +83,10 @@ public class CountingDenseIntSet implements CountingSet<Integer> {
 	@Override
 	public Set<Map.Entry<Integer, Integer>> entrySet() {
 		Set<Map.Entry<Integer, Integer>> entries = new HashSet<>();
-		for (Map.Entry<Integer, Integer> entry : entrySet()) {
-			entries.add(new CountingSetEntry<>(entry.getKey(), entry.getValue()));
+		for (int i = 0; i<set.length; i++) {
+			if ( set[i]>0 ) {
+				entries.add(new CountingSetEntry<>(i, set[i]));
+			}
 		}
 		return entries;
 	}
@@ -69,14 +101,15 @@ public class CountingDenseIntSet implements CountingSet<Integer> {
 
 	@Override
 	public boolean add(Integer key) {
-		boolean isnew = set[key]==0;
-		set[key]++;
+		int k = key;
+		boolean isnew = set[k]==0;
+		update(k, set[k]+1);
 		return isnew;
 	}
 
 	@Override
 	public void set(Integer key, int count) {
-		set[key] = count;
+		update(key, count);
 	}
 
 	@Override
@@ -86,26 +119,53 @@ public class CountingDenseIntSet implements CountingSet<Integer> {
 
 	@Override
 	public int total() {
-		int n = 0;
-		for (int i = 0; i<set.length; i++) {
-			n += set[i];
-		}
-		return n;
+		return total;
 	}
 
 	@Override
 	public int size() {
-		int n = 0;
-		for (int i = 0; i<set.length; i++) {
-			if ( set[i]>0 ) n++;
-		}
 		return n;
 	}
 
+	/** Return the underlying counts; don't alter them or total(), size(),
+	 *  and argmax() will be wrong.
+	 */
 	public int[] toDenseArray() {
 		return set;
 	}
 
+	/** Set set[i] to count and bring total, n, and max up to date */
+	protected void update(int i, int count) {
+		int old = set[i];
+		set[i] = count;
+		total += count - old;
+		if ( old<=0 && count>0 ) n++;
+		else if ( old>0 && count<=0 ) n--;
+		if ( maxDirty ) return; // argmax() will rescan anyway
+		if ( count>0 && (maxIndex<0 || count>set[maxIndex] || (count==set[maxIndex] && i<maxIndex)) ) {
+			maxIndex = i;
+		}
+		else if ( i==maxIndex && count<old ) {
+			maxDirty = true;
+		}
+	}
+
+	/** Recompute total, n, and max from scratch after bulk changes to set[] */
+	protected void recount() {
+		total = 0;
+		n = 0;
+		maxIndex = -1;
+		maxDirty = false;
+		for (int i = 0; i<set.length; i++) {
+			int c = set[i];
+			total += c;
+			if ( c>0 ) {
+				n++;
+				if ( maxIndex<0 || c>set[maxIndex] ) maxIndex = i;
+			}
+		}
+	}
+
 	@Override
 	public List<Integer> counts() {
 		List<Integer> c = new ArrayList<>();
@@ -117,6 +177,53 @@ public class CountingDenseIntSet implements CountingSet<Integer> {
 		return c;
 	}
 
+	/** Add x's counts into this set in place with one pass over the arrays.
+	 *  x may have a bigger set[] than ours as long as its extra slots are 0.
+	 */
+	public boolean addAll(CountingDenseIntSet x) {
+		int[] xset = x.set;
+		int hi = xset.length-1;
+		while ( hi>=0 && xset[hi]==0 ) hi--;
+		if ( hi>=set.length ) {
+			throw new IllegalArgumentException("can't add set with key "+hi+" to set with max value "+(set.length-1));
+		}
+		boolean isNew = false;
+		for (int i = 0; i<=hi; i++) {
+			int c = xset[i];
+			if ( c==0 ) continue;
+			int old = set[i];
+			int v = old + c;
+			set[i] = v;
+			if ( old<=0 && v>0 ) {
+				n++;
+				isNew = true;
+			}
+			else if ( old>0 && v<=0 ) n--;
+		}
+		total += x.total;
+		maxDirty = true;
+		return isNew;
+	}
+
+	@Override
+	public boolean addAll(CountingSet<? extends Integer> c) {
+		if ( c instanceof CountingDenseIntSet ) {
+			return addAll((CountingDenseIntSet)c);
+		}
+		return addCounts(c);
+	}
+
+	/** Add a non-dense set's counts one key at a time through update() */
+	protected <K extends Integer> boolean addCounts(CountingSet<K> x) {
+		boolean isNew = false;
+		for (K key : x.keySet()) {
+			int k = key;
+			if ( set[k]==0 ) isNew = true;
+			update(k, set[k] + x.count(key));
+		}
+		return isNew;
+	}
+
 	public CountingDenseIntSet minus(CountingDenseIntSet x) {
 		CountingDenseIntSet r = new CountingDenseIntSet(this.set.length-1);
 		for (int i = 0; i<this.set.length; i++) {
@@ -129,6 +236,7 @@ public class CountingDenseIntSet implements CountingSet<Integer> {
 				}
 			}
 		}
+		r.recount();
 		return r;
 	}
 
@@ -140,32 +248,81 @@ public class CountingDenseIntSet implements CountingSet<Integer> {
 		CountingDenseIntSet r = new CountingDenseIntSet(this.set.length-1);
 		for (int i = 0; i<set.length; i++) {
 			if ( set[i]>0 ) {
-				if ( x.contains(set[i]) ) {
-					set[i] -= x.count(i);
+				if ( x.contains(i) ) {
+					r.set[i] = set[i] - x.count(i);
+				}
+				else {
+					r.set[i] = set[i];
 				}
 			}
 		}
+		r.recount();
 		return r;
 	}
 
+	/** Return first key with max count or -1 if set is empty; amortized O(1)
+	 *  since we only rescan after the max key's count goes down.
+	 */
 	@Override
 	public Integer argmax() {
-		int m = 0;
-		int mi = -1;
-		// find first non-zero entry from left
-		for (int i = 0; i<set.length; i++) {
-			if ( set[i]>m ) {
-				m = set[i];
-				mi = i;
+		if ( maxDirty ) {
+			int m = 0;
+			int mi = -1;
+			// find first non-zero entry from left
+			for (int i = 0; i<set.length; i++) {
+				if ( set[i]>m ) {
+					m = set[i];
+					mi = i;
+				}
 			}
+			maxIndex = mi;
+			maxDirty = false;
+		}
+		return maxIndex;
+	}
+
+	@Override
+	public List<Integer> topK(int k) {
+		return asList(topKArray(k));
+	}
+
+	@Override
+	public List<Integer> bottomK(int k) {
+		return asList(bottomKArray(k));
+	}
+
+	/** Return the k keys with largest counts, most frequent first, as an int[] */
+	public int[] topKArray(int k) {
+		return extremeK(k, true);
+	}
+
+	/** Return the k keys with smallest positive counts, least frequent first,
+	 *  as an int[].
+	 */
+	public int[] bottomKArray(int k) {
+		return extremeK(k, false);
+	}
+
+	protected int[] extremeK(int k, boolean largest) {
+		CountHeap heap = new CountHeap(Math.min(k, n), largest, false);
+		for (int i = 0; i<set.length; i++) {
+			if ( set[i]>0 ) heap.offer(i, set[i]);
 		}
-		return mi;
+		return heap.ids();
+	}
+
+	protected static List<Integer> asList(int[] a) {
+		List<Integer> result = new ArrayList<>(a.length);
+		for (int v : a) {
+			result.add(v);
+		}
+		return result;
 	}
 
 	@Override
 	public double entropy() {
 		double entropy = 0.0;
-		int n = total();
+		int n = total;
 		for (int i = 0; i<set.length; i++) {
 			if ( set[i]==0 ) continue; // avoid log(0), which is undefined
 			double p = ((double)set[i]) / n;
@@ -197,15 +354,45 @@ public class CountingDenseIntSet implements CountingSet<Integer> {
 
 	@Override
 	public boolean isEmpty() {
-		for (int i = 0; i<set.length; i++) {
-			if ( set[i]>0 ) return true;
-		}
-		return false;
+		return n==0;
 	}
 
+	/** Iterate over keys with positive count in ascending order */
 	@Override
 	public Iterator<Integer> iterator() {
-		throw new UnsupportedOperationException();
+		return new Iterator<Integer>() {
+			int i = advance(0);
+
+			int advance(int j) {
+				while ( j<set.length && set[j]<=0 ) j++;
+				return j;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return i<set.length;
+			}
+
+			@Override
+			public Integer next() {
+				if ( i>=set.length ) throw new NoSuchElementException();
+				int key = i;
+				i = advance(i+1);
+				return key;
+			}
+		};
+	}
+
+	/** Keys with positive count; splits evenly over set[] */
+	@Override
+	public Spliterator.OfInt spliterator() {
+		int[] set = this.set;
+		return new IndexSpliterator(i -> set[i]>0, 0, set.length);
+	}
+
+	/** Stream keys with positive count without boxing */
+	public IntStream intStream() {
+		return StreamSupport.intStream(spliterator(), false);
 	}
 
 	@Override
@@ -245,8 +432,10 @@ public class CountingDenseIntSet implements CountingSet<Integer> {
 
 	@Override
 	public void clear() {
-		for (int i = 0; i<set.length; i++) {
-			set[i] = 0;
-		}
+		Arrays.fill(set, 0);
+		total = 0;
+		n = 0;
+		maxIndex = -1;
+		maxDirty = false;
 	}
 }
@@ -84,6 +84,46 @@ public class CountingHashSet<T> implements CountingSet<T> {
 		return keys;
 	}
 
+	/** Merge in place, bumping existing MutableInts rather than
+	 *  allocating CountingSetEntry objects and replacement MutableInts.
+	 */
+	@Override
+	public boolean addAll(CountingSet<? extends T> c) {
+		boolean isNew = false;
+		if ( c instanceof CountingHashSet ) {
+			for (Map.Entry<? extends T, MutableInt> entry : ((CountingHashSet<? extends T>)c).data.entrySet()) {
+				MutableInt old = data.get(entry.getKey());
+				if ( old==null ) {
+					data.put(entry.getKey(), new MutableInt(entry.getValue().v));
+					isNew = true;
+				}
+				else {
+					old.v += entry.getValue().v;
+				}
+			}
+			return isNew;
+		}
+		return addCounts(c);
+	}
+
+	/** Add x's counts key by key. Taking x's key type as K, rather than
+	 *  ? extends T, lets x.count() accept x's own keys without a cast.
+	 */
+	protected <K extends T> boolean addCounts(CountingSet<K> x) {
+		boolean isNew = false;
+		for (K key : x.keySet()) {
+			MutableInt old = data.get(key);
+			if ( old==null ) {
+				data.put(key, new MutableInt(x.count(key)));
+				isNew = true;
+			}
+			else {
+				old.v += x.count(key);
+			}
+		}
+		return isNew;
+	}
+
 	/** Return a new set containing this[i]-x[i] for all keys i. Values in x
 	 *  but not in this are ignored.  Values in this but not in x yield this's same value
 	 *  in the result.
@@ -111,6 +151,20 @@ public class CountingHashSet<T> implements CountingSet<T> {
 		return keyOfMax;
 	}
 
+	@Override
+	public List<T> topK(int k) {
+		CountHeap heap = new CountHeap(Math.min(k, size()), true, true);
+		data.forEach((key, v) -> heap.offer(key, v.v));
+		return heap.keys();
+	}
+
+	@Override
+	public List<T> bottomK(int k) {
+		CountHeap heap = new CountHeap(Math.min(k, size()), false, true);
+		data.forEach((key, v) -> heap.offer(key, v.v));
+		return heap.keys();
+	}
+
 	public double entropy() {
 		double entropy = 0.0;
 		int n = total();
@@ -0,0 +1,449 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import us.parr.lib.util.MurmurHash;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static us.parr.lib.ParrtMath.log2;
+
+/** Count how many of each key we have using parallel keys/counts arrays
+ *  and open addressing (linear probing) rather than a HashMap of MutableInt.
+ *  Once the table has grown big enough, add(), count(), and set() do not
+ *  allocate any memory. Iteration order is table order, not histogram order
+ *  like {@link CountingHashSet}. Not thread safe.
+ */
+public class CountingOpenHashSet<T> implements CountingSet<T> {
+	public static final int DEFAULT_CAPACITY = 16;
+
+	/** Table is never more than this full so probe sequences stay short */
+	public static final float LOAD_FACTOR = 0.6f;
+
+	/** Stand-in for a null key since null marks an empty slot in keys */
+	protected static final Object NULL_KEY = new Object();
+
+	/** keys[i] is the key in slot i or null if slot is empty */
+	protected Object[] keys;
+
+	/** counts[i] is the count for keys[i] */
+	protected int[] counts;
+
+	/** Number of keys in the table */
+	protected int n;
+
+	/** Sum of all counts, kept up to date so total() is O(1) */
+	protected int total;
+
+	/** Grow when n reaches this */
+	protected int threshold;
+
+	public CountingOpenHashSet() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Make a set that can hold expectedSize keys without growing */
+	public CountingOpenHashSet(int expectedSize) {
+		int capacity = tableSizeFor((int)Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR));
+		allocate(capacity);
+	}
+
+	public CountingOpenHashSet(CountingSet<T> old) {
+		if ( old instanceof CountingOpenHashSet ) { // same layout so copy tables wholesale
+			CountingOpenHashSet<?> o = (CountingOpenHashSet<?>)old;
+			keys = Arrays.copyOf(o.keys, o.keys.length);
+			counts = Arrays.copyOf(o.counts, o.counts.length);
+			n = o.n;
+			total = o.total;
+			threshold = o.threshold;
+		}
+		else {
+			allocate(tableSizeFor((int)Math.ceil(Math.max(old.size(), 1) / LOAD_FACTOR)));
+			for (T key : old.keySet()) {
+				set(key, old.count(key));
+			}
+		}
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return slot(mask(o))>=0;
+	}
+
+	@Override
+	public int count(T key) {
+		int i = slot(mask(key));
+		if ( i<0 ) return 0;
+		return counts[i];
+	}
+
+	@Override
+	public boolean add(T key) {
+		return add(key, 1);
+	}
+
+	/** Add delta to the count for key; return true if key was not in set */
+	public boolean add(T key, int delta) {
+		Object k = mask(key);
+		int i = slot(k);
+		total += delta;
+		if ( i>=0 ) {
+			counts[i] += delta;
+			return false;
+		}
+		insert(k, delta);
+		return true;
+	}
+
+	@Override
+	public void set(T key, int count) {
+		Object k = mask(key);
+		int i = slot(k);
+		if ( i>=0 ) {
+			total += count - counts[i];
+			counts[i] = count;
+			return;
+		}
+		total += count;
+		insert(k, count);
+	}
+
+	@Override
+	public int total() {
+		return total;
+	}
+
+	@Override
+	public int size() {
+		return n;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return n==0;
+	}
+
+	@Override
+	public List<Integer> counts() {
+		List<Integer> c = new ArrayList<>(n);
+		for (int i = 0; i<keys.length; i++) {
+			if ( keys[i]!=null ) c.add(counts[i]);
+		}
+		return c;
+	}
+
+	/** Return a new set containing this[i]-x[i] for all keys i. Values in x
+	 *  but not in this are ignored.  Values in this but not in x yield this's same value
+	 *  in the result.
+	 */
+	@Override
+	public CountingOpenHashSet<T> minus(CountingSet<T> x) {
+		CountingOpenHashSet<T> r = new CountingOpenHashSet<>(this);
+		for (int i = 0; i<r.keys.length; i++) {
+			if ( r.keys[i]==null ) continue;
+			T key = r.unmask(r.keys[i]);
+			if ( x.contains(key) ) {
+				int c = x.count(key);
+				r.counts[i] -= c;
+				r.total -= c;
+			}
+		}
+		return r;
+	}
+
+	/** Walk the table directly when merging another open hash set so we
+	 *  don't create a CountingSetEntry per key.
+	 */
+	@Override
+	public boolean addAll(CountingSet<? extends T> c) {
+		if ( !(c instanceof CountingOpenHashSet) ) {
+			return CountingSet.super.addAll(c);
+		}
+		CountingOpenHashSet<?> o = (CountingOpenHashSet<?>)c;
+		boolean isNew = false;
+		for (int i = 0; i<o.keys.length; i++) {
+			Object k = o.keys[i];
+			if ( k==null ) continue;
+			int j = slot(k);
+			total += o.counts[i];
+			if ( j>=0 ) {
+				counts[j] += o.counts[i];
+			}
+			else {
+				insert(k, o.counts[i]);
+				isNew = true;
+			}
+		}
+		return isNew;
+	}
+
+	@Override
+	public T argmax() {
+		int mi = -1;
+		for (int i = 0; i<keys.length; i++) {
+			if ( keys[i]==null ) continue;
+			if ( mi<0 || counts[i]>counts[mi] ) mi = i;
+		}
+		if ( mi<0 ) return null;
+		return unmask(keys[mi]);
+	}
+
+	@Override
+	public List<T> topK(int k) {
+		return extremeK(k, true);
+	}
+
+	@Override
+	public List<T> bottomK(int k) {
+		return extremeK(k, false);
+	}
+
+	protected List<T> extremeK(int k, boolean largest) {
+		CountHeap heap = new CountHeap(Math.min(k, n), largest, true);
+		for (int i = 0; i<keys.length; i++) {
+			if ( keys[i]!=null ) heap.offer(keys[i], counts[i]);
+		}
+		List<T> result = heap.keys();
+		for (int i = 0; i<result.size(); i++) {
+			if ( result.get(i)==NULL_KEY ) result.set(i, null);
+		}
+		return result;
+	}
+
+	@Override
+	public double entropy() {
+		double entropy = 0.0;
+		for (int i = 0; i<keys.length; i++) {
+			if ( keys[i]==null || counts[i]==0 ) continue; // avoid log(0), which is undefined
+			double p = ((double)counts[i]) / total;
+			entropy += p * log2(p);
+		}
+		entropy = -entropy;
+		return entropy;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		int m = 0;
+		for (int i = 0; i<keys.length; i++) {
+			if ( keys[i]==null ) continue;
+			if ( m>0 ) buf.append(", ");
+			buf.append(String.format("%s:%d", unmask(keys[i]), counts[i]));
+			m++;
+		}
+		buf.append("}");
+		return buf.toString();
+	}
+
+	// satisfy the Set interface
+
+	@Override
+	public Set<T> keySet() {
+		return new AbstractSet<T>() {
+			@Override
+			public Iterator<T> iterator() { return CountingOpenHashSet.this.iterator(); }
+			@Override
+			public int size() { return n; }
+			@Override
+			public boolean contains(Object o) { return CountingOpenHashSet.this.contains(o); }
+		};
+	}
+
+	@Override
+	public Set<Map.Entry<T, Integer>> entrySet() {
+		return new AbstractSet<Map.Entry<T, Integer>>() {
+			@Override
+			public Iterator<Map.Entry<T, Integer>> iterator() {
+				return new SlotIterator<Map.Entry<T, Integer>>() {
+					@Override
+					protected Map.Entry<T, Integer> get(int i) {
+						return new CountingSetEntry<>(unmask(keys[i]), counts[i]);
+					}
+				};
+			}
+			@Override
+			public int size() { return n; }
+		};
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		int i = slot(mask(o));
+		if ( i<0 ) return false;
+		total -= counts[i];
+		delete(i);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i<keys.length; i++) {
+			keys[i] = null;
+			counts[i] = 0;
+		}
+		n = 0;
+		total = 0;
+	}
+
+	/** Cheap; iterates in table order */
+	@Override
+	public Iterator<T> iterator() {
+		return new SlotIterator<T>() {
+			@Override
+			protected T get(int i) { return unmask(keys[i]); }
+		};
+	}
+
+	@Override
+	public Object[] toArray() {
+		return keySet().toArray();
+	}
+
+	@Override
+	public <T1> T1[] toArray(T1[] a) {
+		return keySet().toArray(a);
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+".containsAll");
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+".retainAll");
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+".removeAll");
+	}
+
+	// table support
+
+	protected abstract class SlotIterator<E> implements Iterator<E> {
+		protected int i = advance(0);
+
+		protected int advance(int j) {
+			while ( j<keys.length && keys[j]==null ) j++;
+			return j;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return i<keys.length;
+		}
+
+		@Override
+		public E next() {
+			if ( i>=keys.length ) throw new NoSuchElementException();
+			E e = get(i);
+			i = advance(i+1);
+			return e;
+		}
+
+		protected abstract E get(int i);
+	}
+
+	protected static int hash(Object k) {
+		int hash = MurmurHash.initialize();
+		hash = MurmurHash.update(hash, k.hashCode());
+		return MurmurHash.finish(hash, 1);
+	}
+
+	/** Return slot index of k or -1 if not found */
+	protected int slot(Object k) {
+		int mask = keys.length-1;
+		int i = hash(k) & mask;
+		Object ki;
+		while ( (ki = keys[i])!=null ) {
+			if ( ki==k || ki.equals(k) ) return i;
+			i = (i+1) & mask;
+		}
+		return -1;
+	}
+
+	/** Put k, known not to be in table, into the first free slot */
+	protected void insert(Object k, int count) {
+		if ( n>=threshold ) {
+			rehash(keys.length*2);
+		}
+		int mask = keys.length-1;
+		int i = hash(k) & mask;
+		while ( keys[i]!=null ) {
+			i = (i+1) & mask;
+		}
+		keys[i] = k;
+		counts[i] = count;
+		n++;
+	}
+
+	/** Remove slot i; see {@link ProbeRun#delete} */
+	protected void delete(int i) {
+		i = ProbeRun.delete(i, keys.length-1, this::home, this::move);
+		keys[i] = null;
+		counts[i] = 0;
+		n--;
+	}
+
+	/** Home slot of the key in slot j or -1 if empty */
+	protected int home(int j) {
+		return keys[j]==null ? -1 : hash(keys[j]) & (keys.length-1);
+	}
+
+	protected void move(int from, int to) {
+		keys[to] = keys[from];
+		counts[to] = counts[from];
+	}
+
+	protected void rehash(int capacity) {
+		Object[] oldKeys = keys;
+		int[] oldCounts = counts;
+		allocate(capacity);
+		int mask = capacity-1;
+		for (int j = 0; j<oldKeys.length; j++) {
+			Object k = oldKeys[j];
+			if ( k==null ) continue;
+			int i = hash(k) & mask;
+			while ( keys[i]!=null ) {
+				i = (i+1) & mask;
+			}
+			keys[i] = k;
+			counts[i] = oldCounts[j];
+		}
+	}
+
+	protected void allocate(int capacity) {
+		keys = new Object[capacity];
+		counts = new int[capacity];
+		threshold = (int)(capacity * LOAD_FACTOR);
+	}
+
+	protected static Object mask(Object key) {
+		return key==null ? NULL_KEY : key;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected T unmask(Object k) {
+		return k==NULL_KEY ? null : (T)k;
+	}
+
+	protected static int tableSizeFor(int c) {
+		int size = Integer.highestOneBit(Math.max(c, 2)-1) << 1;
+		return Math.max(size, 2);
+	}
+}
@@ -55,5 +55,25 @@ public interface CountingSet<T> extends Set<T> {
 	/** Return the key with the max count; tie goes to first cat at max found. */
 	T argmax();
 
+	/** Return the k keys with largest counts, most frequent first, without
+	 *  sorting the whole set; O(n log k).
+	 */
+	default List<T> topK(int k) {
+		CountHeap heap = new CountHeap(Math.min(k, size()), true, true);
+		for (T key : keySet()) {
+			heap.offer(key, count(key));
+		}
+		return heap.keys();
+	}
+
+	/** Return the k keys with smallest counts, least frequent first; O(n log k). */
+	default List<T> bottomK(int k) {
+		CountHeap heap = new CountHeap(Math.min(k, size()), false, true);
+		for (T key : keySet()) {
+			heap.offer(key, count(key));
+		}
+		return heap.keys();
+	}
+
 	double entropy();
 }
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/** A weighted counting set whose weights decay exponentially with time
+ *  so recent observations dominate; weight halves every halfLife time units.
+ *
+ *  Rather than touching every key as time passes, we store weights scaled
+ *  up by e^(lambda*(t-landmark)) when added at time t (forward decay). All
+ *  stored weights then decay by the same factor, so weight(key) and total()
+ *  just scale by e^(-lambda*(now-landmark)), argmax() is unaffected, and
+ *  entropy() and gini() are scale invariant. When the scale factor gets
+ *  big, we fold it into the stored weights, move the landmark to now, and
+ *  drop keys whose weight has faded below {@link #PRUNE_WEIGHT}; that
+ *  happens rarely enough to be amortized O(1) per add.
+ *
+ *  Time must not go backwards. Not thread safe.
+ */
+public class DecayingCountingSet<T> implements WeightedCountingSet<T> {
+	/** Drop keys whose decayed weight falls below this when rescaling */
+	public static final double PRUNE_WEIGHT = 1e-9;
+
+	/** Rescale once the exponent on stored weights reaches this */
+	protected static final double MAX_EXPONENT = 50.0;
+
+	/** Decay rate: ln(2)/halfLife */
+	protected final double lambda;
+
+	/** Stored (forward-decayed) weights relative to landmark */
+	protected final WeightedCountingHashSet<T> data = new WeightedCountingHashSet<>();
+
+	protected long landmark;
+
+	/** Latest time seen */
+	protected long now;
+
+	/** Key with largest stored weight; null means rescan */
+	protected T maxKey;
+
+	public DecayingCountingSet(double halfLife) {
+		this(halfLife, 0);
+	}
+
+	public DecayingCountingSet(double halfLife, long startTime) {
+		if ( halfLife<=0 ) {
+			throw new IllegalArgumentException("half life must be positive: "+halfLife);
+		}
+		this.lambda = Math.log(2.0) / halfLife;
+		this.landmark = startTime;
+		this.now = startTime;
+	}
+
+	/** Add weight for key at time; time must be at least the latest time seen */
+	public void add(T key, double weight, long time) {
+		advanceTo(time);
+		add(key, weight);
+	}
+
+	public void add(T key, long time) {
+		add(key, 1.0, time);
+	}
+
+	/** Add weight for key at the latest time seen */
+	@Override
+	public void add(T key, double weight) {
+		data.add(key, weight * scale());
+		if ( maxKey!=null && weight>0 && data.weight(key)>data.weight(maxKey) ) {
+			maxKey = key;
+		}
+		else if ( weight<0 && Objects.equals(key, maxKey) ) {
+			maxKey = null;
+		}
+		else if ( maxKey==null && data.size()==1 ) {
+			maxKey = key;
+		}
+	}
+
+	@Override
+	public void set(T key, double weight) {
+		data.set(key, weight * scale());
+		maxKey = null;
+	}
+
+	/** Move the clock forward; weights decay accordingly */
+	public void advanceTo(long time) {
+		if ( time<now ) {
+			throw new IllegalArgumentException("time went backwards: "+time+" < "+now);
+		}
+		now = time;
+		if ( lambda*(now-landmark) > MAX_EXPONENT ) {
+			rescale();
+		}
+	}
+
+	public long now() {
+		return now;
+	}
+
+	/** Weight of key decayed to the latest time seen */
+	@Override
+	public double weight(T key) {
+		return data.weight(key) / scale();
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return data.contains(o);
+	}
+
+	/** Sum of all weights decayed to the latest time seen */
+	@Override
+	public double total() {
+		return data.total() / scale();
+	}
+
+	@Override
+	public int size() {
+		return data.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return data.isEmpty();
+	}
+
+	@Override
+	public Set<T> keySet() {
+		return data.keySet();
+	}
+
+	@Override
+	public void clear() {
+		data.clear();
+		landmark = now;
+		maxKey = null;
+	}
+
+	@Override
+	public T argmax() {
+		if ( maxKey==null ) {
+			maxKey = data.argmax();
+		}
+		return maxKey;
+	}
+
+	/** Decay is a common factor so entropy of stored weights is entropy of
+	 *  decayed weights.
+	 */
+	@Override
+	public double entropy() {
+		return data.entropy();
+	}
+
+	@Override
+	public double gini() {
+		return data.gini();
+	}
+
+	/** e^(lambda*(now-landmark)): how much bigger stored weights are than
+	 *  decayed weights.
+	 */
+	protected double scale() {
+		return Math.exp(lambda*(now-landmark));
+	}
+
+	/** Fold the scale into stored weights, reset landmark, and prune */
+	protected void rescale() {
+		double s = scale();
+		double total = 0.0;
+		for (Iterator<Map.Entry<T, MutableDouble>> it = data.data.entrySet().iterator(); it.hasNext(); ) {
+			MutableDouble w = it.next().getValue();
+			w.v /= s;
+			if ( Math.abs(w.v)<PRUNE_WEIGHT ) {
+				it.remove();
+			}
+			else {
+				total += w.v;
+			}
+		}
+		data.total = total;
+		landmark = now;
+		maxKey = null;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		int n = 0;
+		double s = scale();
+		for (Map.Entry<T, MutableDouble> entry : data.data.entrySet()) {
+			if ( n>0 ) buf.append(", ");
+			buf.append(String.format("%s:%s", entry.getKey(), entry.getValue().v / s));
+			n++;
+		}
+		buf.append("}");
+		return buf.toString();
+	}
+}
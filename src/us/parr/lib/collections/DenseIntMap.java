@@ -6,17 +6,109 @@
 
 package us.parr.lib.collections;
 
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
+/** A map from non-negative int keys to non-null values stored directly in
+ *  buckets[key]. A null bucket means the key is absent so putting a null
+ *  value removes the key. buckets[] grows geometrically to fit larger keys
+ *  and the number of entries is tracked as they come and go, so size() and
+ *  isEmpty() don't scan. Not thread safe.
+ */
 public class DenseIntMap<T> implements Map<Integer, T> {
+	/** Iterate over keys with non-null values, in ascending order */
+	protected abstract class BucketIterator<E> implements Iterator<E> {
+		protected int next = advance(0);
+		protected int last = -1;
+
+		protected int advance(int i) {
+			while ( i<buckets.length && buckets[i]==null ) i++;
+			return i;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next<buckets.length;
+		}
+
+		@Override
+		public E next() {
+			if ( next>=buckets.length ) throw new NoSuchElementException();
+			last = next;
+			next = advance(next+1);
+			return get(last);
+		}
+
+		protected abstract E get(int key);
+
+		@Override
+		public void remove() {
+			if ( last<0 ) throw new IllegalStateException();
+			DenseIntMap.this.remove(last);
+			last = -1;
+		}
+	}
+
+	/** An entry that reads and writes through to buckets[key] */
+	protected class BucketEntry implements Entry<Integer, T> {
+		protected final int key;
+
+		protected BucketEntry(int key) {
+			this.key = key;
+		}
+
+		@Override
+		public Integer getKey() {
+			return key;
+		}
+
+		@Override
+		public T getValue() {
+			return DenseIntMap.this.get(key);
+		}
+
+		@Override
+		public T setValue(T value) {
+			Objects.requireNonNull(value);
+			return put(key, value);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if ( !(o instanceof Entry) ) return false;
+			Entry<?,?> e = (Entry<?,?>)o;
+			return getKey().equals(e.getKey()) && Objects.equals(getValue(), e.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return key ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public String toString() {
+			return key+"="+getValue();
+		}
+	}
+
 	protected T[] buckets;
 
+	/** Number of non-null buckets */
+	protected int n;
+
 	public DenseIntMap(int initialMaxKeyValue) {
-		buckets = (T[])new Object[initialMaxKeyValue];
+		buckets = (T[])new Object[initialMaxKeyValue+1];
 	}
 
 	public DenseIntMap() {
@@ -25,75 +117,182 @@ public class DenseIntMap<T> implements Map<Integer, T> {
 
 	@Override
 	public int size() {
-		int n = 0;
-		for (int i = 0; i<buckets.length; i++) {
-			if ( buckets[i]!=null ) n++;
-		}
 		return n;
 	}
 
 	@Override
 	public boolean isEmpty() {
-		return size()>0;
+		return n==0;
 	}
 
 	@Override
 	public boolean containsKey(Object key) {
-		return buckets[(Integer)key]!=null;
+		if ( key==null || !(key instanceof Integer) ) return false;
+		return get(((Integer)key).intValue())!=null;
+	}
+
+	public boolean containsKey(int key) {
+		return get(key)!=null;
 	}
 
 	@Override
 	public boolean containsValue(Object value) {
+		if ( value==null ) return false;
 		for (int i = 0; i<buckets.length; i++) {
-			if ( buckets[i].equals(value) ) return true;
+			if ( value.equals(buckets[i]) ) return true;
 		}
 		return false;
 	}
 
 	@Override
 	public T get(Object key) {
-		return buckets[(Integer)key];
+		if ( key==null || !(key instanceof Integer) ) return null;
+		return get(((Integer)key).intValue());
 	}
 
-	public T get(int key) { return buckets[key]; }
+	public T get(int key) {
+		if ( key<0 || key>=buckets.length ) return null;
+		return buckets[key];
+	}
 
 	@Override
 	public T put(Integer key, T value) {
+		return put(key.intValue(), value);
+	}
+
+	/** Map key to value, growing buckets[] if needed; a null value removes key */
+	public T put(int key, T value) {
+		if ( key<0 ) {
+			throw new IllegalArgumentException("keys must be non-negative: "+key);
+		}
+		if ( value==null ) return remove(key);
+		if ( key>=buckets.length ) grow(key);
 		T old = buckets[key];
 		buckets[key] = value;
+		if ( old==null ) n++;
 		return old;
 	}
 
-	public void put(int key, T value) { buckets[key] = value; }
-
 	@Override
 	public T remove(Object key) {
-		throw new UnsupportedOperationException();
+		if ( key==null || !(key instanceof Integer) ) return null;
+		return remove(((Integer)key).intValue());
+	}
+
+	public T remove(int key) {
+		T old = get(key);
+		if ( old!=null ) {
+			buckets[key] = null;
+			n--;
+		}
+		return old;
 	}
 
 	@Override
 	public void putAll(Map<? extends Integer, ? extends T> m) {
-		throw new UnsupportedOperationException();
+		if ( m instanceof DenseIntMap ) {
+			putAll(asDense(m));
+			return;
+		}
+		for (Entry<? extends Integer, ? extends T> e : m.entrySet()) {
+			put(e.getKey(), e.getValue());
+		}
+	}
+
+	/** Copy other's buckets straight into ours, growing at most once */
+	public void putAll(DenseIntMap<? extends T> other) {
+		int hi = other.buckets.length-1;
+		while ( hi>=0 && other.buckets[hi]==null ) hi--;
+		if ( hi>=buckets.length ) grow(hi);
+		for (int i = 0; i<=hi; i++) {
+			T v = other.buckets[i];
+			if ( v!=null ) {
+				if ( buckets[i]==null ) n++;
+				buckets[i] = v;
+			}
+		}
 	}
 
+	/** m is a DenseIntMap so its values are Ts, per m's type */
+	@SuppressWarnings("unchecked")
+	protected static <T> DenseIntMap<? extends T> asDense(Map<? extends Integer, ? extends T> m) {
+		return (DenseIntMap<? extends T>)m;
+	}
+
+	/** Remove all entries but keep buckets[] for reuse */
 	@Override
 	public void clear() {
-		buckets = (T[])new Object[buckets.length];
+		Arrays.fill(buckets, null);
+		n = 0;
 	}
 
+	/** Return a DenseIntSet copy of the keys */
 	@Override
 	public Set<Integer> keySet() {
-		return new DenseIntSet(buckets.length);
+		DenseIntSet keys = new DenseIntSet(Math.max(buckets.length-1, 0));
+		for (int i = 0; i<buckets.length; i++) {
+			if ( buckets[i]!=null ) keys.add(i);
+		}
+		return keys;
 	}
 
+	/** A view of the values in key order; removal writes through */
 	@Override
 	public Collection<T> values() {
-		throw new UnsupportedOperationException();
+		return new AbstractCollection<T>() {
+			@Override
+			public Iterator<T> iterator() {
+				return new BucketIterator<T>() {
+					@Override
+					protected T get(int key) { return buckets[key]; }
+				};
+			}
+
+			@Override
+			public int size() { return n; }
+
+			@Override
+			public void clear() { DenseIntMap.this.clear(); }
+		};
 	}
 
+	/** A view of the entries in key order; entries read and write through */
 	@Override
 	public Set<Entry<Integer, T>> entrySet() {
-		throw new UnsupportedOperationException();
+		return new AbstractSet<Entry<Integer, T>>() {
+			@Override
+			public Iterator<Entry<Integer, T>> iterator() {
+				return new BucketIterator<Entry<Integer, T>>() {
+					@Override
+					protected Entry<Integer, T> get(int key) { return new BucketEntry(key); }
+				};
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				if ( !(o instanceof Entry) ) return false;
+				Entry<?,?> e = (Entry<?,?>)o;
+				T v = DenseIntMap.this.get(e.getKey());
+				return v!=null && v.equals(e.getValue());
+			}
+
+			@Override
+			public int size() { return n; }
+
+			@Override
+			public void clear() { DenseIntMap.this.clear(); }
+		};
+	}
+
+	/** Keys with non-null values in ascending order; splits evenly over buckets */
+	public Spliterator.OfInt keySpliterator() {
+		T[] buckets = this.buckets;
+		return new IndexSpliterator(i -> buckets[i]!=null, 0, buckets.length);
+	}
+
+	/** Stream keys with non-null values without boxing */
+	public IntStream keyStream() {
+		return StreamSupport.intStream(keySpliterator(), false);
 	}
 
 	public void forEach(BiConsumer<? super Integer, ? super T> action) {
@@ -104,4 +303,47 @@ public class DenseIntMap<T> implements Map<Integer, T> {
 			}
 		}
 	}
+
+	@Override
+	public boolean equals(Object o) {
+		if ( o==this ) return true;
+		if ( !(o instanceof Map) ) return false;
+		Map<?,?> m = (Map<?,?>)o;
+		if ( m.size()!=n ) return false;
+		for (int i = 0; i<buckets.length; i++) {
+			if ( buckets[i]!=null && !buckets[i].equals(m.get(i)) ) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = 0;
+		for (int i = 0; i<buckets.length; i++) {
+			if ( buckets[i]!=null ) h += i ^ buckets[i].hashCode(); // as Map.Entry.hashCode()
+		}
+		return h;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		for (int i = 0; i<buckets.length; i++) {
+			if ( buckets[i]!=null ) {
+				if ( buf.length()>1 ) buf.append(", ");
+				buf.append(i);
+				buf.append("=");
+				buf.append(buckets[i]);
+			}
+		}
+		buf.append("}");
+		return buf.toString();
+	}
+
+	/** Make room for key, at least doubling the number of buckets */
+	protected void grow(int key) {
+		int len = Math.max(key+1, buckets.length*2);
+		buckets = Arrays.copyOf(buckets, len);
+	}
 }
@@ -6,147 +6,390 @@
 
 package us.parr.lib.collections;
 
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Set;
+import java.util.NoSuchElementException;
 import java.util.Spliterator;
-import java.util.function.Consumer;
-import java.util.function.Predicate;
-import java.util.stream.Stream;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
-// TODO: should probably flip hierarchy for this class due to UnsupportedOperationException stuff
-public class DenseIntSet extends CountingDenseIntSet implements Set<Integer> {
-	public static class MyIterator implements Iterator<Integer> {
-		protected final DenseIntSet data;
-		protected int i = 0;
+/** A set of non-negative ints stored one bit per possible member in
+ *  64-bit words. Cardinality is tracked as members come and go (bulk ops
+ *  recount with {@link Long#bitCount}), iteration skips empty words via
+ *  nextSetBit(), and and/or/andNot/xor combine whole words at a time in
+ *  place. The set grows as needed to hold larger members. intStream()
+ *  splits over words so parallel streams divide the set evenly.
+ */
+public class DenseIntSet extends AbstractSet<Integer> {
+	protected static final int WORD_BITS = 64;
+	protected static final int LOG_WORD_BITS = 6;
 
-		public MyIterator(DenseIntSet data) {
-			this.data = data;
-		}
+	public class MyIterator implements Iterator<Integer> {
+		protected int next = nextSetBit(0);
+		protected int last = -1;
 
 		@Override
 		public boolean hasNext() {
-			return i<data.set.length;
+			return next>=0;
 		}
 
 		@Override
 		public Integer next() {
-			return data.set[i++];
+			if ( next<0 ) throw new NoSuchElementException();
+			last = next;
+			next = nextSetBit(next+1);
+			return last;
+		}
+
+		@Override
+		public void remove() {
+			if ( last<0 ) throw new IllegalStateException();
+			DenseIntSet.this.remove(last);
+			last = -1;
+		}
+	}
+
+	/** Spliterate over members in words [w, fence) 64 at a time, splitting
+	 *  at word boundaries.
+	 */
+	public class MySpliterator implements Spliterator.OfInt {
+		/** Don't split fewer words than this (1024 possible members) */
+		protected static final int MIN_SPLIT_WORDS = 16;
+
+		protected int w;
+		protected long word; // bits of words[w] not yet visited
+		protected final int fence;
+
+		protected MySpliterator(int w, long word, int fence) {
+			this.w = w;
+			this.word = word;
+			this.fence = fence;
+		}
+
+		@Override
+		public OfInt trySplit() {
+			int lo = w+1;
+			int mid = (lo + fence) >>> 1;
+			if ( mid-lo < MIN_SPLIT_WORDS ) return null;
+			MySpliterator prefix = new MySpliterator(w, word, mid);
+			w = mid;
+			word = words[mid];
+			return prefix;
+		}
+
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			while ( word==0 ) {
+				if ( ++w>=fence ) {
+					w = fence;
+					return false;
+				}
+				word = words[w];
+			}
+			int i = w*WORD_BITS + Long.numberOfTrailingZeros(word);
+			word &= word-1;
+			action.accept(i);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(IntConsumer action) {
+			long[] words = DenseIntSet.this.words;
+			for (int i = w; i<fence; i++) {
+				long bits = i==w ? word : words[i];
+				while ( bits!=0 ) {
+					action.accept(i*WORD_BITS + Long.numberOfTrailingZeros(bits));
+					bits &= bits-1;
+				}
+			}
+			w = fence;
+			word = 0;
+		}
+
+		/** Upper bound: remaining words times bits per word */
+		@Override
+		public long estimateSize() {
+			return (long)(fence - w) * WORD_BITS;
+		}
+
+		@Override
+		public int characteristics() {
+			return IndexSpliterator.CHARACTERISTICS;
+		}
+
+		@Override
+		public Comparator<? super Integer> getComparator() {
+			return null; // natural order
 		}
 	}
 
+	protected long[] words;
+
+	/** Number of members */
+	protected int n;
+
 	public DenseIntSet(int maxSetValue) {
-		super(maxSetValue);
+		words = new long[wordIndex(maxSetValue)+1];
+	}
+
+	public DenseIntSet(DenseIntSet old) {
+		words = Arrays.copyOf(old.words, old.words.length);
+		n = old.n;
+	}
+
+	public boolean add(int key) {
+		if ( key<0 ) {
+			throw new IllegalArgumentException("keys must be non-negative: "+key);
+		}
+		int w = wordIndex(key);
+		if ( w>=words.length ) grow(w);
+		long bit = 1L << key;
+		if ( (words[w] & bit)!=0 ) return false;
+		words[w] |= bit;
+		n++;
+		return true;
 	}
 
 	@Override
 	public boolean add(Integer key) {
-		boolean isnew = set[key]==0;
-		set[key] = 1;
-		return isnew;
+		return add(key.intValue());
 	}
 
-	@Override
-	public int count(Integer key) {
-		throw new UnsupportedOperationException();
+	public boolean contains(int key) {
+		int w = wordIndex(key);
+		return key>=0 && w<words.length && (words[w] & (1L << key))!=0;
 	}
 
 	@Override
-	public List<Integer> counts() {
-		throw new UnsupportedOperationException();
+	public boolean contains(Object o) {
+		if ( o==null || !(o instanceof Integer) ) return false;
+		return contains(((Integer)o).intValue());
 	}
 
-	@Override
-	public CountingSet<Integer> minus(CountingSet<Integer> x) {
-		throw new UnsupportedOperationException();
+	public boolean remove(int key) {
+		if ( !contains(key) ) return false;
+		words[wordIndex(key)] &= ~(1L << key);
+		n--;
+		return true;
 	}
 
 	@Override
-	public Integer argmax() {
-		throw new UnsupportedOperationException();
+	public boolean remove(Object o) {
+		if ( o==null || !(o instanceof Integer) ) return false;
+		return remove(((Integer)o).intValue());
 	}
 
 	@Override
-	public int total() {
-		return size();
+	public int size() {
+		return n;
 	}
 
-	// Set<Integer> stuff
-
-
 	@Override
 	public boolean isEmpty() {
-		return keySet().size()==0;
+		return n==0;
 	}
 
 	@Override
-	public Iterator<Integer> iterator() {
-		return new MyIterator(this);
+	public void clear() {
+		Arrays.fill(words, 0L);
+		n = 0;
 	}
 
-	@Override
-	public Object[] toArray() {
-		throw new UnsupportedOperationException();
+	/** Return the first member >= from or -1 if none */
+	public int nextSetBit(int from) {
+		if ( from<0 ) from = 0;
+		int w = wordIndex(from);
+		if ( w>=words.length ) return -1;
+		long word = words[w] & (-1L << from); // shift is mod 64
+		while ( true ) {
+			if ( word!=0 ) return w*WORD_BITS + Long.numberOfTrailingZeros(word);
+			if ( ++w==words.length ) return -1;
+			word = words[w];
+		}
 	}
 
-	@Override
-	public <T> T[] toArray(T[] a) {
-		throw new UnsupportedOperationException();
+	/** Return the first non-member >= from */
+	public int nextClearBit(int from) {
+		if ( from<0 ) from = 0;
+		int w = wordIndex(from);
+		if ( w>=words.length ) return from;
+		long word = ~words[w] & (-1L << from);
+		while ( true ) {
+			if ( word!=0 ) return w*WORD_BITS + Long.numberOfTrailingZeros(word);
+			if ( ++w==words.length ) return words.length*WORD_BITS;
+			word = ~words[w];
+		}
 	}
 
-	@Override
-	public boolean remove(Object o) {
-		throw new UnsupportedOperationException();
+	/** this = this & other */
+	public void and(DenseIntSet other) {
+		int common = Math.min(words.length, other.words.length);
+		for (int i = 0; i<common; i++) {
+			words[i] &= other.words[i];
+		}
+		Arrays.fill(words, common, words.length, 0L);
+		recount();
 	}
 
-	@Override
-	public boolean containsAll(Collection<?> c) {
-		throw new UnsupportedOperationException();
+	/** this = this | other */
+	public void or(DenseIntSet other) {
+		if ( other.words.length>words.length ) grow(other.words.length-1);
+		for (int i = 0; i<other.words.length; i++) {
+			words[i] |= other.words[i];
+		}
+		recount();
+	}
+
+	/** this = this & ~other */
+	public void andNot(DenseIntSet other) {
+		int common = Math.min(words.length, other.words.length);
+		for (int i = 0; i<common; i++) {
+			words[i] &= ~other.words[i];
+		}
+		recount();
+	}
+
+	/** this = this ^ other */
+	public void xor(DenseIntSet other) {
+		if ( other.words.length>words.length ) grow(other.words.length-1);
+		for (int i = 0; i<other.words.length; i++) {
+			words[i] ^= other.words[i];
+		}
+		recount();
+	}
+
+	/** Does this set share any members with other? */
+	public boolean intersects(DenseIntSet other) {
+		int common = Math.min(words.length, other.words.length);
+		for (int i = 0; i<common; i++) {
+			if ( (words[i] & other.words[i])!=0 ) return true;
+		}
+		return false;
 	}
 
 	@Override
 	public boolean addAll(Collection<? extends Integer> c) {
-		throw new UnsupportedOperationException();
+		if ( c instanceof DenseIntSet ) {
+			int before = n;
+			or((DenseIntSet)c);
+			return n!=before;
+		}
+		return super.addAll(c);
 	}
 
 	@Override
 	public boolean retainAll(Collection<?> c) {
-		throw new UnsupportedOperationException();
+		if ( c instanceof DenseIntSet ) {
+			int before = n;
+			and((DenseIntSet)c);
+			return n!=before;
+		}
+		return super.retainAll(c);
 	}
 
 	@Override
 	public boolean removeAll(Collection<?> c) {
-		throw new UnsupportedOperationException();
+		if ( c instanceof DenseIntSet ) {
+			int before = n;
+			andNot((DenseIntSet)c);
+			return n!=before;
+		}
+		return super.removeAll(c);
 	}
 
 	@Override
-	public void clear() {
-		throw new UnsupportedOperationException();
+	public boolean containsAll(Collection<?> c) {
+		if ( c instanceof DenseIntSet ) {
+			long[] o = ((DenseIntSet)c).words;
+			for (int i = 0; i<o.length; i++) {
+				long mine = i<words.length ? words[i] : 0L;
+				if ( (o[i] & ~mine)!=0 ) return false;
+			}
+			return true;
+		}
+		return super.containsAll(c);
 	}
 
+	/** Return members in ascending order */
+	public int[] toIntArray() {
+		int[] a = new int[n];
+		int j = 0;
+		for (int i = nextSetBit(0); i>=0; i = nextSetBit(i+1)) {
+			a[j++] = i;
+		}
+		return a;
+	}
+
+	/** Iterate over members in ascending order */
 	@Override
-	public Spliterator<Integer> spliterator() {
-		throw new UnsupportedOperationException();
+	public Iterator<Integer> iterator() {
+		return new MyIterator();
 	}
 
 	@Override
-	public boolean removeIf(Predicate<? super Integer> filter) {
-		throw new UnsupportedOperationException();
+	public Spliterator.OfInt spliterator() {
+		return new MySpliterator(0, words.length>0 ? words[0] : 0L, words.length);
+	}
+
+	/** Stream members without boxing; call parallel() to split over words */
+	public IntStream intStream() {
+		return StreamSupport.intStream(spliterator(), false);
+	}
+
+	/** Call action on each member in ascending order without boxing */
+	public void forEachInt(IntConsumer action) {
+		spliterator().forEachRemaining(action);
 	}
 
 	@Override
-	public Stream<Integer> stream() {
-		throw new UnsupportedOperationException();
+	public boolean equals(Object o) {
+		if ( o instanceof DenseIntSet ) {
+			DenseIntSet other = (DenseIntSet)o;
+			if ( n!=other.n ) return false;
+			int common = Math.min(words.length, other.words.length);
+			for (int i = 0; i<common; i++) {
+				if ( words[i]!=other.words[i] ) return false;
+			}
+			return true; // same count and same common words means rest are zero
+		}
+		return super.equals(o);
 	}
 
 	@Override
-	public Stream<Integer> parallelStream() {
-		throw new UnsupportedOperationException();
+	public int hashCode() {
+		return super.hashCode(); // must agree with other Sets
 	}
 
 	@Override
-	public void forEach(Consumer<? super Integer> action) {
-		throw new UnsupportedOperationException();
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		for (int i = nextSetBit(0); i>=0; i = nextSetBit(i+1)) {
+			if ( buf.length()>1 ) buf.append(", ");
+			buf.append(i);
+		}
+		buf.append("}");
+		return buf.toString();
+	}
+
+	protected void recount() {
+		int c = 0;
+		for (long w : words) {
+			c += Long.bitCount(w);
+		}
+		n = c;
+	}
+
+	protected void grow(int minWordIndex) {
+		int len = Math.max(minWordIndex+1, words.length*2);
+		words = Arrays.copyOf(words, len);
+	}
+
+	protected static int wordIndex(int bit) {
+		return bit >> LOG_WORD_BITS;
 	}
 }
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import us.parr.lib.util.MurmurHash;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/** The same operations as {@link DoubleKeyMap} (plus remove) but in one
+ *  open-addressing table rather than nested maps: both keys are
+ *  hashed together and key1, key2, value, and hash sit in parallel arrays,
+ *  so get(k1,k2) is one probe sequence with no inner map and put() doesn't
+ *  allocate once the table is big enough.
+ *
+ *  keySet(k1) and values(k1) scan the whole table unless we're asked to
+ *  keep a secondary index from key1 to its key2s. Without the index,
+ *  results come back in table order, not insertion order. With it, keySet()
+ *  and keySet(k1) are read-only views of the index. Not thread safe.
+ */
+public class FlatDoubleKeyMap<Key1, Key2, Value> {
+	public static final int DEFAULT_CAPACITY = 16;
+
+	/** Table is never more than this full so probe sequences stay short */
+	public static final float LOAD_FACTOR = 0.6f;
+
+	/** Stand-in for a null key1 since null marks an empty slot in keys1 */
+	protected static final Object NULL_KEY = new Object();
+
+	protected Object[] keys1;
+	protected Object[] keys2;
+	protected Object[] values;
+
+	/** hashes[i] is the hash of keys1[i],keys2[i]; saves calling hashCode() */
+	protected int[] hashes;
+
+	protected int n;
+
+	/** Grow when n reaches this */
+	protected int threshold;
+
+	/** key1 to its key2s in insertion order; null unless we keep an index */
+	protected final Map<Key1, Set<Key2>> index;
+
+	public FlatDoubleKeyMap() {
+		this(DEFAULT_CAPACITY, false);
+	}
+
+	/** Make a map that can hold expectedSize entries without growing;
+	 *  optionally index key1 so keySet(k1) and values(k1) don't scan.
+	 */
+	public FlatDoubleKeyMap(int expectedSize, boolean indexKey1) {
+		allocate(CountingOpenHashSet.tableSizeFor((int)Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR)));
+		index = indexKey1 ? new HashMap<>() : null;
+	}
+
+	public Value put(Key1 k1, Key2 k2, Value v) {
+		Object m1 = mask(k1);
+		int h = hash(m1, k2);
+		int i = slot(m1, k2, h);
+		if ( i>=0 ) {
+			Value prev = value(i);
+			values[i] = v;
+			return prev;
+		}
+		if ( n>=threshold ) {
+			rehash(keys1.length*2);
+		}
+		i = place(m1, k2, h);
+		values[i] = v;
+		n++;
+		if ( index!=null ) index.computeIfAbsent(k1, k -> new LinkedHashSet<>()).add(k2);
+		return null;
+	}
+
+	public Value get(Key1 k1, Key2 k2) {
+		Object m1 = mask(k1);
+		int i = slot(m1, k2, hash(m1, k2));
+		return i>=0 ? value(i) : null;
+	}
+
+	public boolean containsKey(Key1 k1, Key2 k2) {
+		Object m1 = mask(k1);
+		return slot(m1, k2, hash(m1, k2))>=0;
+	}
+
+	public Value remove(Key1 k1, Key2 k2) {
+		Object m1 = mask(k1);
+		int i = slot(m1, k2, hash(m1, k2));
+		if ( i<0 ) return null;
+		Value prev = value(i);
+		delete(i);
+		if ( index!=null ) {
+			Set<Key2> k2s = index.get(k1);
+			k2s.remove(k2);
+			if ( k2s.isEmpty() ) index.remove(k1);
+		}
+		return prev;
+	}
+
+	/** Return a new map of key2 to value for k1, or null if none */
+	public Map<Key2, Value> get(Key1 k1) {
+		Collection<Key2> k2s = keySet(k1);
+		if ( k2s==null ) return null;
+		Map<Key2, Value> m = new LinkedHashMap<>();
+		for (Key2 k2 : k2s) {
+			m.put(k2, get(k1, k2));
+		}
+		return m;
+	}
+
+	/** Get all values associated with primary key */
+	public Collection<Value> values(Key1 k1) {
+		if ( index!=null ) {
+			Set<Key2> k2s = index.get(k1);
+			if ( k2s==null ) return null;
+			List<Value> result = new ArrayList<>(k2s.size());
+			for (Key2 k2 : k2s) {
+				result.add(get(k1, k2));
+			}
+			return result;
+		}
+		Object m1 = mask(k1);
+		List<Value> result = new ArrayList<>();
+		for (int i = 0; i<keys1.length; i++) {
+			if ( keys1[i]!=null && keys1[i].equals(m1) ) result.add(value(i));
+		}
+		return result.isEmpty() ? null : result;
+	}
+
+	/** get all primary keys */
+	public Set<Key1> keySet() {
+		if ( index!=null ) return Collections.unmodifiableSet(index.keySet());
+		Set<Key1> keys = new LinkedHashSet<>();
+		for (int i = 0; i<keys1.length; i++) {
+			if ( keys1[i]!=null ) keys.add(unmask(keys1[i]));
+		}
+		return keys;
+	}
+
+	/** get all secondary keys associated with a primary key */
+	public Set<Key2> keySet(Key1 k1) {
+		if ( index!=null ) {
+			Set<Key2> k2s = index.get(k1);
+			return k2s!=null ? Collections.unmodifiableSet(k2s) : null;
+		}
+		Object m1 = mask(k1);
+		Set<Key2> keys = new LinkedHashSet<>();
+		for (int i = 0; i<keys1.length; i++) {
+			if ( keys1[i]!=null && keys1[i].equals(m1) ) keys.add(key2(i));
+		}
+		return keys.isEmpty() ? null : keys;
+	}
+
+	/** Number of (key1, key2) entries */
+	public int size() {
+		return n;
+	}
+
+	public boolean isEmpty() {
+		return n==0;
+	}
+
+	/** Remove all entries but keep the table for reuse */
+	public void clear() {
+		for (int i = 0; i<keys1.length; i++) {
+			keys1[i] = null;
+			keys2[i] = null;
+			values[i] = null;
+		}
+		n = 0;
+		if ( index!=null ) index.clear();
+	}
+
+	// table support
+
+	protected static int hash(Object k1, Object k2) {
+		int hash = MurmurHash.initialize();
+		hash = MurmurHash.update(MurmurHash.update(hash, k1), k2);
+		return MurmurHash.finish(hash, 2);
+	}
+
+	/** Return slot index of (k1,k2) or -1 if not found */
+	protected int slot(Object k1, Object k2, int h) {
+		int mask = keys1.length-1;
+		int i = h & mask;
+		Object ki;
+		while ( (ki = keys1[i])!=null ) {
+			if ( hashes[i]==h && (ki==k1 || ki.equals(k1)) && Objects.equals(keys2[i], k2) ) return i;
+			i = (i+1) & mask;
+		}
+		return -1;
+	}
+
+	/** Put (k1,k2), known not to be in a table with room, into the first free slot */
+	protected int place(Object k1, Object k2, int h) {
+		int mask = keys1.length-1;
+		int i = h & mask;
+		while ( keys1[i]!=null ) {
+			i = (i+1) & mask;
+		}
+		keys1[i] = k1;
+		keys2[i] = k2;
+		hashes[i] = h;
+		return i;
+	}
+
+	/** Remove slot i; see {@link ProbeRun#delete} */
+	protected void delete(int i) {
+		i = ProbeRun.delete(i, keys1.length-1, this::home, this::move);
+		keys1[i] = null;
+		keys2[i] = null;
+		values[i] = null;
+		n--;
+	}
+
+	/** Home slot of the entry in slot j or -1 if empty */
+	protected int home(int j) {
+		return keys1[j]==null ? -1 : hashes[j] & (keys1.length-1);
+	}
+
+	protected void move(int from, int to) {
+		keys1[to] = keys1[from];
+		keys2[to] = keys2[from];
+		values[to] = values[from];
+		hashes[to] = hashes[from];
+	}
+
+	protected void rehash(int capacity) {
+		Object[] oldKeys1 = keys1;
+		Object[] oldKeys2 = keys2;
+		Object[] oldValues = values;
+		int[] oldHashes = hashes;
+		allocate(capacity);
+		for (int j = 0; j<oldKeys1.length; j++) {
+			if ( oldKeys1[j]==null ) continue;
+			int i = place(oldKeys1[j], oldKeys2[j], oldHashes[j]);
+			values[i] = oldValues[j];
+		}
+	}
+
+	protected void allocate(int capacity) {
+		keys1 = new Object[capacity];
+		keys2 = new Object[capacity];
+		values = new Object[capacity];
+		hashes = new int[capacity];
+		threshold = (int)(capacity * LOAD_FACTOR);
+	}
+
+	protected static Object mask(Object key) {
+		return key==null ? NULL_KEY : key;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected Key1 unmask(Object k) {
+		return k==NULL_KEY ? null : (Key1)k;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected Key2 key2(int i) {
+		return (Key2)keys2[i];
+	}
+
+	@SuppressWarnings("unchecked")
+	protected Value value(int i) {
+		return (Value)values[i];
+	}
+}
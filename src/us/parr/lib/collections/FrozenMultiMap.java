@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import us.parr.lib.util.MurmurHash;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/** An immutable MultiMap in compressed sparse row (CSR) layout: keys in one
+ *  array, all values back to back in another, and offsets[i]..offsets[i+1]
+ *  marking the values of key i. Keys are found through an open-addressing
+ *  index of key ordinals. get() returns a read-only slice of the values
+ *  array rather than a copy, so there is no per-key collection at all.
+ *
+ *  Keys keep the order of the map we froze and each key's values keep the
+ *  iteration order of its collection. Values of a counting set are its
+ *  distinct keys. stream() splits evenly by key for parallel processing.
+ */
+public class FrozenMultiMap<K, V> implements MultiMap<K, V> {
+	/** Read-only view of values[lo..hi) */
+	protected class Slice extends AbstractList<V> implements RandomAccess {
+		protected final int lo, hi;
+
+		protected Slice(int lo, int hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		public V get(int i) {
+			if ( i<0 || i>=hi-lo ) throw new IndexOutOfBoundsException("index "+i+" size "+(hi-lo));
+			return value(lo+i);
+		}
+
+		@Override
+		public int size() {
+			return hi-lo;
+		}
+	}
+
+	protected final Object[] keys;
+
+	/** Values of key i are values[offsets[i]..offsets[i+1]) */
+	protected final int[] offsets;
+
+	protected final Object[] values;
+
+	/** index[h] is 1 + ordinal of a key hashing near h, or 0 if empty */
+	protected final int[] index;
+
+	public FrozenMultiMap(MultiMap<K, V> m) {
+		int nkeys = m.size();
+		int nvalues = 0;
+		for (Collection<V> vs : m.values()) {
+			nvalues += vs.size();
+		}
+		keys = new Object[nkeys];
+		offsets = new int[nkeys+1];
+		values = new Object[nvalues];
+		int k = 0;
+		int v = 0;
+		for (Map.Entry<K, Collection<V>> e : m.entrySet()) {
+			keys[k] = e.getKey();
+			offsets[k] = v;
+			for (V value : e.getValue()) {
+				values[v++] = value;
+			}
+			k++;
+		}
+		offsets[nkeys] = v;
+
+		index = new int[CountingOpenHashSet.tableSizeFor(nkeys*2)];
+		int mask = index.length-1;
+		for (int i = 0; i<nkeys; i++) {
+			int h = hash(keys[i]) & mask;
+			while ( index[h]!=0 ) {
+				h = (h+1) & mask;
+			}
+			index[h] = i+1;
+		}
+	}
+
+	/** Return the values of key, or null if key isn't in the map */
+	@Override
+	public List<V> get(K key) {
+		int i = ordinal(key);
+		if ( i<0 ) return null;
+		return new Slice(offsets[i], offsets[i+1]);
+	}
+
+	/** Return key's ordinal, its position in keySet() order, or -1 */
+	public int ordinal(Object key) {
+		int mask = index.length-1;
+		int h = hash(key) & mask;
+		int i;
+		while ( (i = index[h])!=0 ) {
+			if ( Objects.equals(keys[i-1], key) ) return i-1;
+			h = (h+1) & mask;
+		}
+		return -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	public K key(int ordinal) {
+		return (K)keys[ordinal];
+	}
+
+	/** Values of the key with this ordinal */
+	public List<V> values(int ordinal) {
+		return new Slice(offsets[ordinal], offsets[ordinal+1]);
+	}
+
+	@Override
+	public int size() {
+		return keys.length;
+	}
+
+	/** Number of values over all keys */
+	public int valueCount() {
+		return values.length;
+	}
+
+	@Override
+	public boolean containsKey(K key) {
+		return ordinal(key)>=0;
+	}
+
+	@Override
+	public FrozenMultiMap<K, V> freeze() {
+		return this;
+	}
+
+	@Override
+	public Set<K> keySet() {
+		return new AbstractSet<K>() {
+			@Override
+			public Iterator<K> iterator() { return keyList().iterator(); }
+			@Override
+			public int size() { return keys.length; }
+			@Override
+			public boolean contains(Object o) { return ordinal(o)>=0; }
+		};
+	}
+
+	@Override
+	public Set<Map.Entry<K, Collection<V>>> entrySet() {
+		return new AbstractSet<Map.Entry<K, Collection<V>>>() {
+			@Override
+			public Iterator<Map.Entry<K, Collection<V>>> iterator() {
+				return IntStream.range(0, keys.length)
+					.mapToObj(i -> (Map.Entry<K, Collection<V>>)new AbstractMap.SimpleImmutableEntry<K, Collection<V>>(key(i), values(i)))
+					.iterator();
+			}
+			@Override
+			public int size() { return keys.length; }
+		};
+	}
+
+	@Override
+	public Collection<Collection<V>> values() {
+		return new AbstractList<Collection<V>>() {
+			@Override
+			public Collection<V> get(int i) { return values(i); }
+			@Override
+			public int size() { return keys.length; }
+		};
+	}
+
+	/** Entries in key order; parallel() splits evenly by key */
+	public Stream<Map.Entry<K, List<V>>> stream() {
+		return IntStream.range(0, keys.length)
+			.mapToObj(i -> new AbstractMap.SimpleImmutableEntry<>(key(i), values(i)));
+	}
+
+	/** All values, key by key; parallel() splits evenly over the values array */
+	public Stream<V> valueStream() {
+		return IntStream.range(0, values.length).mapToObj(this::value);
+	}
+
+	@Override
+	public void put(K key, V value) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+".put");
+	}
+
+	@Override
+	public void set(K key, Collection<V> values) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+".set");
+	}
+
+	@Override
+	public Collection<V> remove(K key) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+".remove");
+	}
+
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+".clear");
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		for (int i = 0; i<keys.length; i++) {
+			if ( i>0 ) buf.append(", ");
+			buf.append(keys[i]);
+			buf.append("=");
+			buf.append(values(i));
+		}
+		buf.append("}");
+		return buf.toString();
+	}
+
+	protected List<K> keyList() {
+		return new AbstractList<K>() {
+			@Override
+			public K get(int i) { return key(i); }
+			@Override
+			public int size() { return keys.length; }
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	protected V value(int i) {
+		return (V)values[i];
+	}
+
+	protected static int hash(Object k) {
+		int hash = MurmurHash.initialize();
+		hash = MurmurHash.update(hash, Objects.hashCode(k));
+		return MurmurHash.finish(hash, 1);
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/** Spliterate over the indexes in [index, fence) of a dense backing array
+ *  for which isMember is true, without boxing. Splits halve the index
+ *  range so parallel streams divide the array evenly.
+ */
+class IndexSpliterator implements Spliterator.OfInt {
+	protected static final int CHARACTERISTICS = ORDERED | DISTINCT | SORTED | NONNULL;
+
+	/** Don't split ranges smaller than this; not worth a fork-join task */
+	protected static final int MIN_SPLIT = 1024;
+
+	protected final IntPredicate isMember;
+	protected int index;
+	protected final int fence;
+
+	IndexSpliterator(IntPredicate isMember, int index, int fence) {
+		this.isMember = isMember;
+		this.index = index;
+		this.fence = fence;
+	}
+
+	@Override
+	public OfInt trySplit() {
+		int lo = index;
+		int mid = (lo + fence) >>> 1;
+		if ( mid-lo < MIN_SPLIT ) return null;
+		index = mid;
+		return new IndexSpliterator(isMember, lo, mid);
+	}
+
+	@Override
+	public boolean tryAdvance(IntConsumer action) {
+		while ( index<fence ) {
+			int i = index++;
+			if ( isMember.test(i) ) {
+				action.accept(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void forEachRemaining(IntConsumer action) {
+		int i = index;
+		int hi = fence;
+		index = hi;
+		for (; i<hi; i++) {
+			if ( isMember.test(i) ) action.accept(i);
+		}
+	}
+
+	/** Upper bound; we don't know how many slots in range are members */
+	@Override
+	public long estimateSize() {
+		return fence - index;
+	}
+
+	@Override
+	public int characteristics() {
+		return CHARACTERISTICS;
+	}
+
+	@Override
+	public Comparator<? super Integer> getComparator() {
+		return null; // natural order
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.IntToLongFunction;
+
+/** A map from int to long using open addressing over parallel keys/values
+ *  arrays, so neither keys nor values are boxed. Absent keys read as
+ *  noValue, 0 by default. Once the table has grown big enough, put(),
+ *  addTo(), and get() do not allocate. Iteration is in table order. Not
+ *  thread safe.
+ */
+public class IntLongMap extends AbstractIntKeyMap {
+	@FunctionalInterface
+	public interface EntryConsumer {
+		void accept(int key, long value);
+	}
+
+	/** values[i] is the value for keys[i]; values[keys.length] is key 0's */
+	protected long[] values;
+
+	/** What get() returns for keys not in the map */
+	protected long noValue;
+
+	public IntLongMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Make a map that can hold expectedSize keys without growing */
+	public IntLongMap(int expectedSize) {
+		super(expectedSize);
+	}
+
+	public IntLongMap(int expectedSize, long noValue) {
+		super(expectedSize);
+		this.noValue = noValue;
+	}
+
+	public IntLongMap(IntLongMap old) {
+		super(old);
+		values = Arrays.copyOf(old.values, old.values.length);
+		noValue = old.noValue;
+	}
+
+	public long get(int key) {
+		return getOrDefault(key, noValue);
+	}
+
+	public long getOrDefault(int key, long defaultValue) {
+		int i = slot(key);
+		return i>=0 ? values[i] : defaultValue;
+	}
+
+	/** Map key to value and return the old value or noValue */
+	public long put(int key, long value) {
+		int i = findOrInsert(key); // may rehash so don't index values until after
+		if ( i<0 ) {
+			values[-(i+1)] = value;
+			return noValue;
+		}
+		long old = values[i];
+		values[i] = value;
+		return old;
+	}
+
+	/** Add delta to key's value, starting from 0 if absent; return the new value */
+	public long addTo(int key, long delta) {
+		int i = findOrInsert(key);
+		if ( i<0 ) {
+			values[-(i+1)] = delta;
+			return delta;
+		}
+		return values[i] += delta;
+	}
+
+	/** Same as addTo(key, 1) */
+	public long increment(int key) {
+		return addTo(key, 1);
+	}
+
+	/** Return key's value, first mapping it to f(key) if absent */
+	public long computeIfAbsent(int key, IntToLongFunction f) {
+		int i = slot(key);
+		if ( i>=0 ) return values[i];
+		long v = f.applyAsLong(key);
+		i = insert(key);
+		values[i] = v;
+		return v;
+	}
+
+	/** Call action on each key and value in table order */
+	public void forEach(EntryConsumer action) {
+		Objects.requireNonNull(action);
+		forEachSlot(i -> action.accept(keyAt(i), values[i]));
+	}
+
+	// table support
+
+	@Override
+	protected void allocateValues(int capacity) {
+		values = new long[capacity];
+	}
+
+	@Override
+	protected Object valueArray() {
+		return values;
+	}
+
+	@Override
+	protected void copyValue(Object oldValues, int from, int to) {
+		values[to] = ((long[])oldValues)[from];
+	}
+
+	@Override
+	protected void moveValue(int from, int to) {
+		values[to] = values[from];
+	}
+
+	@Override
+	protected void clearValue(int i) {
+		values[i] = 0;
+	}
+
+	@Override
+	protected void clearValues() {
+		Arrays.fill(values, 0);
+	}
+
+	@Override
+	protected void appendValue(StringBuilder buf, int i) {
+		buf.append(values[i]);
+	}
+}
@@ -33,4 +33,9 @@ public interface MultiMap<K, V> {
 	Set<Map.Entry<K,Collection<V>>> entrySet();
 
 	Collection<Collection<V>> values();
+
+	/** Return an immutable compressed copy of this map for read-mostly use */
+	default FrozenMultiMap<K, V> freeze() {
+		return new FrozenMultiMap<>(this);
+	}
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static us.parr.lib.ParrtMath.log2;
+
+/** Like {@link CountingDenseIntSet} but the counts live off the Java heap
+ *  in an {@link OffHeapDenseTable}, so billions of keys don't cost GC time
+ *  and a count table file built by one JVM can be opened in place by
+ *  others. Keys are longs in 0..length()-1 and the table doesn't grow.
+ *  total() and size() are kept as counts change. Not thread safe.
+ */
+public class OffHeapCountingDenseIntSet extends OffHeapDenseTable {
+	/** Count keys 0..maxSetValue in direct (off-heap) memory */
+	public OffHeapCountingDenseIntSet(long maxSetValue) {
+		super(maxSetValue+1, 4);
+	}
+
+	protected OffHeapCountingDenseIntSet(Path file, long length, boolean readOnly) throws IOException {
+		super(file, length, 4, readOnly);
+	}
+
+	/** Create a new table file for keys 0..maxSetValue and map it */
+	public static OffHeapCountingDenseIntSet create(Path file, long maxSetValue) throws IOException {
+		return new OffHeapCountingDenseIntSet(file, maxSetValue+1, false);
+	}
+
+	/** Map an existing table file in place without reading it */
+	public static OffHeapCountingDenseIntSet open(Path file, boolean readOnly) throws IOException {
+		return new OffHeapCountingDenseIntSet(file, -1, readOnly);
+	}
+
+	public boolean contains(long key) {
+		return count(key)>0;
+	}
+
+	public int count(long key) {
+		if ( !inRange(key) ) return 0;
+		return getInt(key);
+	}
+
+	/** Add one to key's count; return true if key was not in set */
+	public boolean add(long key) {
+		return add(key, 1)==1;
+	}
+
+	/** Add delta to key's count and return the new count */
+	public int add(long key, int delta) {
+		checkKey(key);
+		int old = getInt(key);
+		update(key, old, old+delta);
+		return old+delta;
+	}
+
+	public void set(long key, int count) {
+		checkKey(key);
+		update(key, getInt(key), count);
+	}
+
+	/** Sum of all counts */
+	public long total() {
+		return total;
+	}
+
+	/** Return first key with max count or -1 if set is empty; scans all keys */
+	public long argmax() {
+		int m = 0;
+		long mi = -1;
+		for (long i = 0; i<length; i++) {
+			int c = getInt(i);
+			if ( c>m ) {
+				m = c;
+				mi = i;
+			}
+		}
+		return mi;
+	}
+
+	public double entropy() {
+		double entropy = 0.0;
+		for (long i = 0; i<length; i++) {
+			int c = getInt(i);
+			if ( c<=0 ) continue; // avoid log(0), which is undefined
+			double p = ((double)c) / total;
+			entropy += p * log2(p);
+		}
+		return -entropy;
+	}
+
+	protected void update(long key, int old, int count) {
+		checkWritable();
+		putInt(key, count);
+		total += count - old;
+		if ( old<=0 && count>0 ) n++;
+		else if ( old>0 && count<=0 ) n--;
+	}
+
+	/** Recount also treats only positive counts as members */
+	@Override
+	protected void recount() {
+		long c = 0;
+		long t = 0;
+		for (long i = 0; i<length; i++) {
+			int v = getInt(i);
+			if ( v>0 ) c++;
+			t += v;
+		}
+		n = c;
+		total = t;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		for (long i = 0; i<length; i++) {
+			int c = getInt(i);
+			if ( c>0 ) {
+				if ( buf.length()>1 ) buf.append(", ");
+				buf.append(i);
+				buf.append("=");
+				buf.append(c);
+			}
+		}
+		buf.append("}");
+		return buf.toString();
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/** Like {@link DenseIntMap} but slots live off the Java heap in an
+ *  {@link OffHeapDenseTable}. Objects can't live off heap so values are
+ *  longs, such as ids or offsets into other storage, and 0 means absent
+ *  like a null bucket in DenseIntMap. Keys are longs in 0..length()-1 and
+ *  the table doesn't grow. Not thread safe.
+ */
+public class OffHeapDenseIntMap extends OffHeapDenseTable {
+	/** Map keys 0..maxKeyValue in direct (off-heap) memory */
+	public OffHeapDenseIntMap(long maxKeyValue) {
+		super(maxKeyValue+1, 8);
+	}
+
+	protected OffHeapDenseIntMap(Path file, long length, boolean readOnly) throws IOException {
+		super(file, length, 8, readOnly);
+	}
+
+	/** Create a new table file for keys 0..maxKeyValue and map it */
+	public static OffHeapDenseIntMap create(Path file, long maxKeyValue) throws IOException {
+		return new OffHeapDenseIntMap(file, maxKeyValue+1, false);
+	}
+
+	/** Map an existing table file in place without reading it */
+	public static OffHeapDenseIntMap open(Path file, boolean readOnly) throws IOException {
+		return new OffHeapDenseIntMap(file, -1, readOnly);
+	}
+
+	public boolean containsKey(long key) {
+		return get(key)!=0;
+	}
+
+	/** Return key's value or 0 if absent */
+	public long get(long key) {
+		if ( !inRange(key) ) return 0;
+		return getLong(key);
+	}
+
+	/** Map key to value and return the old value or 0; a 0 value removes key */
+	public long put(long key, long value) {
+		checkKey(key);
+		checkWritable();
+		long old = getLong(key);
+		putLong(key, value);
+		if ( old==0 && value!=0 ) n++;
+		else if ( old!=0 && value==0 ) n--;
+		return old;
+	}
+
+	public long remove(long key) {
+		if ( !inRange(key) ) return 0;
+		return put(key, 0);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		for (long i = 0; i<length; i++) {
+			long v = getLong(i);
+			if ( v!=0 ) {
+				if ( buf.length()>1 ) buf.append(", ");
+				buf.append(i);
+				buf.append("=");
+				buf.append(v);
+			}
+		}
+		buf.append("}");
+		return buf.toString();
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** A fixed-length array of int or long slots, indexed by long, that lives
+ *  outside the Java heap in direct ByteBuffers or in a memory-mapped file.
+ *  A buffer can't exceed 2G bytes so slots are spread over 1G segments.
+ *
+ *  A table file is a 64-byte little-endian header followed by the slots:
+ *
+ *  magic, version, slot bytes, clean flag (ints),
+ *  number of slots, number of nonzero slots, total (longs).
+ *
+ *  Files are opened in place without reading the slots. The clean flag is
+ *  cleared while a file is open for writing and set by close(), so if a
+ *  writer dies we recount rather than trust stale header stats.
+ */
+public abstract class OffHeapDenseTable implements Closeable {
+	public static final int MAGIC = 0x50444E53; // "PDNS"
+	public static final int VERSION = 1;
+
+	protected static final int HEADER_BYTES = 64;
+	protected static final int SEGMENT_SHIFT = 30;
+	protected static final long SEGMENT_BYTES = 1L << SEGMENT_SHIFT;
+	protected static final long SEGMENT_MASK = SEGMENT_BYTES-1;
+
+	protected static final int CLEAN_OFFSET = 12;
+	protected static final int LENGTH_OFFSET = 16;
+	protected static final int N_OFFSET = 24;
+	protected static final int TOTAL_OFFSET = 32;
+
+	/** Slots are spread over these buffers, SEGMENT_BYTES each but the last */
+	protected final ByteBuffer[] segments;
+
+	/** Number of slots */
+	protected final long length;
+
+	/** 4 for int slots, 8 for long slots */
+	protected final int slotBytes;
+
+	/** Number of nonzero slots */
+	protected long n;
+
+	/** Sum of slot values; only meaningful for counting tables */
+	protected long total;
+
+	/** Non-null if we're backed by a file */
+	protected final FileChannel channel;
+	protected final MappedByteBuffer header;
+	protected final boolean readOnly;
+
+	/** Allocate length zeroed slots in direct buffers */
+	protected OffHeapDenseTable(long length, int slotBytes) {
+		this.length = length;
+		this.slotBytes = slotBytes;
+		this.segments = new ByteBuffer[numSegments(length*slotBytes)];
+		for (int s = 0; s<segments.length; s++) {
+			segments[s] = ByteBuffer.allocateDirect((int)segmentSize(length*slotBytes, s))
+			                        .order(ByteOrder.LITTLE_ENDIAN);
+		}
+		this.channel = null;
+		this.header = null;
+		this.readOnly = false;
+	}
+
+	/** Create a table file with length zeroed slots, or open an existing
+	 *  one if length<0, and map it in place. If anything goes wrong after
+	 *  the file is opened, we close it and delete it if we created it.
+	 */
+	protected OffHeapDenseTable(Path file, long length, int slotBytes, boolean readOnly) throws IOException {
+		this.readOnly = readOnly;
+		boolean create = length>=0;
+		FileChannel ch;
+		if ( create ) {
+			ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+			                      StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		else if ( readOnly ) {
+			ch = FileChannel.open(file, StandardOpenOption.READ);
+		}
+		else {
+			ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		channel = ch;
+		try {
+			FileChannel.MapMode mode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+			boolean recount = false;
+			if ( create ) {
+				ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				h.putInt(0, MAGIC);
+				h.putInt(4, VERSION);
+				h.putInt(8, slotBytes);
+				h.putLong(LENGTH_OFFSET, length);
+				ch.write(h, 0);
+				// sparse files on most platforms so this doesn't write length*slotBytes zeros
+				ch.write(ByteBuffer.allocate(1), HEADER_BYTES+length*slotBytes-1);
+				header = ch.map(mode, 0, HEADER_BYTES);
+				header.order(ByteOrder.LITTLE_ENDIAN);
+			}
+			else {
+				if ( ch.size()<HEADER_BYTES ) {
+					throw new IOException("not a dense table file: "+file);
+				}
+				header = ch.map(mode, 0, HEADER_BYTES);
+				header.order(ByteOrder.LITTLE_ENDIAN);
+				if ( header.getInt(0)!=MAGIC || header.getInt(4)!=VERSION || header.getInt(8)!=slotBytes ) {
+					throw new IOException("not a dense table file with "+slotBytes+"-byte slots: "+file);
+				}
+				length = header.getLong(LENGTH_OFFSET);
+				if ( length<0 || ch.size()<HEADER_BYTES+length*slotBytes ) {
+					throw new IOException("truncated dense table file: "+file);
+				}
+				n = header.getLong(N_OFFSET);
+				total = header.getLong(TOTAL_OFFSET);
+				recount = header.getInt(CLEAN_OFFSET)==0;
+			}
+			this.length = length;
+			this.slotBytes = slotBytes;
+			long bytes = length*slotBytes;
+			this.segments = new ByteBuffer[numSegments(bytes)];
+			for (int s = 0; s<segments.length; s++) {
+				segments[s] = ch.map(mode, HEADER_BYTES+s*SEGMENT_BYTES, segmentSize(bytes, s))
+				                .order(ByteOrder.LITTLE_ENDIAN);
+			}
+			if ( !readOnly ) header.putInt(CLEAN_OFFSET, 0);
+			if ( recount ) recount();
+		}
+		catch (Throwable t) {
+			try {
+				ch.close();
+				if ( create ) Files.deleteIfExists(file);
+			}
+			catch (IOException ioe) {
+				t.addSuppressed(ioe);
+			}
+			throw t;
+		}
+	}
+
+	/** Number of slots; keys are 0..length()-1 */
+	public long length() {
+		return length;
+	}
+
+	/** Number of nonzero slots */
+	public long size() {
+		return n;
+	}
+
+	public boolean isEmpty() {
+		return n==0;
+	}
+
+	/** Zero all slots */
+	public void clear() {
+		checkWritable();
+		for (ByteBuffer seg : segments) {
+			int i = 0;
+			for (; i+8<=seg.capacity(); i += 8) seg.putLong(i, 0L);
+			for (; i<seg.capacity(); i += 4) seg.putInt(i, 0);
+		}
+		n = 0;
+		total = 0;
+	}
+
+	/** Write stats to the header and flush mapped slots to the file */
+	public void flush() {
+		if ( channel==null || readOnly ) return;
+		writeStats();
+		for (ByteBuffer seg : segments) {
+			((MappedByteBuffer)seg).force();
+		}
+		header.force();
+	}
+
+	/** Flush, mark the file clean, and close it; the table is unusable after */
+	@Override
+	public void close() throws IOException {
+		if ( channel==null ) return;
+		if ( !readOnly ) {
+			flush();
+			header.putInt(CLEAN_OFFSET, 1);
+			header.force();
+		}
+		channel.close();
+	}
+
+	/** Recompute n and total by scanning every slot */
+	protected void recount() {
+		long c = 0;
+		long t = 0;
+		for (long i = 0; i<length; i++) {
+			long v = slotBytes==4 ? getInt(i) : getLong(i);
+			if ( v!=0 ) c++;
+			t += v;
+		}
+		n = c;
+		total = t;
+	}
+
+	protected void writeStats() {
+		header.putLong(N_OFFSET, n);
+		header.putLong(TOTAL_OFFSET, total);
+	}
+
+	protected int getInt(long i) {
+		long off = i << 2;
+		return segments[(int)(off >>> SEGMENT_SHIFT)].getInt((int)(off & SEGMENT_MASK));
+	}
+
+	protected void putInt(long i, int v) {
+		long off = i << 2;
+		segments[(int)(off >>> SEGMENT_SHIFT)].putInt((int)(off & SEGMENT_MASK), v);
+	}
+
+	protected long getLong(long i) {
+		long off = i << 3;
+		return segments[(int)(off >>> SEGMENT_SHIFT)].getLong((int)(off & SEGMENT_MASK));
+	}
+
+	protected void putLong(long i, long v) {
+		long off = i << 3;
+		segments[(int)(off >>> SEGMENT_SHIFT)].putLong((int)(off & SEGMENT_MASK), v);
+	}
+
+	protected boolean inRange(long key) {
+		return key>=0 && key<length;
+	}
+
+	protected void checkKey(long key) {
+		if ( !inRange(key) ) {
+			throw new IndexOutOfBoundsException("key "+key+" not in 0.."+(length-1));
+		}
+	}
+
+	protected void checkWritable() {
+		if ( readOnly ) {
+			throw new UnsupportedOperationException(getClass().getSimpleName()+" is read-only");
+		}
+	}
+
+	protected static int numSegments(long bytes) {
+		return (int)Math.max(1, (bytes + SEGMENT_BYTES - 1) >>> SEGMENT_SHIFT);
+	}
+
+	protected static long segmentSize(long bytes, int s) {
+		return Math.min(SEGMENT_BYTES, bytes - s*SEGMENT_BYTES);
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.function.IntUnaryOperator;
+
+/** Backward-shift deletion for the linear probing tables in this package,
+ *  {@link CountingOpenHashSet}, {@link AbstractIntKeyMap}, and
+ *  {@link FlatDoubleKeyMap}. Tables differ in how they store keys and
+ *  values so they pass in how to find a slot's home and move a slot.
+ */
+class ProbeRun {
+	/** Copy the key and value in slot from to slot to */
+	interface SlotMover {
+		void move(int from, int to);
+	}
+
+	/** Empty slot i of a table with capacity mask+1 by shifting later
+	 *  members of its probe run backwards; linear probing doesn't need
+	 *  tombstones that way. home(j) is the home slot of the key in slot j
+	 *  or -1 if slot j is empty. Return the slot left over at the end of
+	 *  the run, which the caller must clear.
+	 */
+	static int delete(int i, int mask, IntUnaryOperator home, SlotMover mover) {
+		int j = i;
+		while ( true ) {
+			j = (j+1) & mask;
+			int h = home.applyAsInt(j);
+			if ( h<0 ) return i;
+			// leave slot j alone if its home slot is cyclically within (i,j]
+			boolean inRun = i<=j ? (i<h && h<=j) : (i<h || h<=j);
+			if ( inRun ) continue;
+			mover.move(j, i);
+			i = j;
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.List;
+import java.util.Set;
+
+/** Count keys seen over the most recent window of time, split into
+ *  numBuckets buckets of bucketWidth time units each. Each bucket counts its
+ *  own keys and a running window set holds the sum over all buckets. When
+ *  time moves past the oldest bucket, its counts are subtracted from the
+ *  window and the bucket is cleared for reuse. Every add is subtracted at
+ *  most once, so expiry is amortized O(1) per add, and argmax(), entropy(),
+ *  etc. always reflect just the window without recounting.
+ *
+ *  The window covers [start of oldest bucket, now]; adds older than that
+ *  are ignored. Not thread safe.
+ */
+public class SlidingWindowCountingSet<T> {
+	protected final long bucketWidth;
+
+	/** Ring of per-bucket counts; bucket b lives at buckets[b % length] */
+	protected final CountingOpenHashSet<T>[] buckets;
+
+	/** Sum of all buckets' counts */
+	protected final CountingOpenHashSet<T> window = new CountingOpenHashSet<>();
+
+	/** Index (time/bucketWidth) of most recent bucket */
+	protected long currentBucket;
+
+	public SlidingWindowCountingSet(int numBuckets, long bucketWidth) {
+		this(numBuckets, bucketWidth, 0);
+	}
+
+	public SlidingWindowCountingSet(int numBuckets, long bucketWidth, long startTime) {
+		if ( numBuckets<=0 || bucketWidth<=0 ) {
+			throw new IllegalArgumentException("need positive buckets and width: "+numBuckets+", "+bucketWidth);
+		}
+		this.bucketWidth = bucketWidth;
+		this.buckets = newBuckets(numBuckets);
+		for (int i = 0; i<numBuckets; i++) {
+			buckets[i] = new CountingOpenHashSet<>();
+		}
+		this.currentBucket = Math.floorDiv(startTime, bucketWidth);
+	}
+
+	/** Count key at time; return false if time is already outside the window */
+	public boolean add(T key, long time) {
+		long b = Math.floorDiv(time, bucketWidth);
+		if ( b>currentBucket ) {
+			advanceTo(time);
+		}
+		else if ( b<=currentBucket-buckets.length ) {
+			return false;
+		}
+		buckets[(int)Math.floorMod(b, (long)buckets.length)].add(key);
+		window.add(key);
+		return true;
+	}
+
+	/** Slide the window forward so it ends at time, expiring old buckets */
+	public void advanceTo(long time) {
+		long b = Math.floorDiv(time, bucketWidth);
+		if ( b<=currentBucket ) return;
+		long first = Math.max(currentBucket+1, b-buckets.length+1);
+		for (long e = first; e<=b; e++) {
+			expire(buckets[(int)Math.floorMod(e, (long)buckets.length)]);
+		}
+		currentBucket = b;
+	}
+
+	public int count(T key) {
+		return window.count(key);
+	}
+
+	public boolean contains(T key) {
+		return window.contains(key);
+	}
+
+	/** Number of adds within the window */
+	public int total() {
+		return window.total();
+	}
+
+	/** Number of distinct keys within the window */
+	public int size() {
+		return window.size();
+	}
+
+	public boolean isEmpty() {
+		return window.isEmpty();
+	}
+
+	public Set<T> keySet() {
+		return window.keySet();
+	}
+
+	public List<Integer> counts() {
+		return window.counts();
+	}
+
+	public T argmax() {
+		return window.argmax();
+	}
+
+	public double entropy() {
+		return window.entropy();
+	}
+
+	public List<T> topK(int k) {
+		return window.topK(k);
+	}
+
+	/** The counts within the window; don't alter */
+	public CountingSet<T> window() {
+		return window;
+	}
+
+	public void clear() {
+		for (CountingOpenHashSet<T> bucket : buckets) {
+			bucket.clear();
+		}
+		window.clear();
+	}
+
+	/** Subtract bucket's counts from window, dropping keys that reach zero */
+	protected void expire(CountingOpenHashSet<T> bucket) {
+		if ( bucket.isEmpty() ) return;
+		Object[] keys = bucket.keys;
+		int[] counts = bucket.counts;
+		for (int i = 0; i<keys.length; i++) {
+			if ( keys[i]==null ) continue;
+			T key = bucket.unmask(keys[i]);
+			int c = window.count(key) - counts[i];
+			if ( c<=0 ) window.remove(key);
+			else window.set(key, c);
+		}
+		bucket.clear();
+	}
+
+	@Override
+	public String toString() {
+		return window.toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	protected static <T> CountingOpenHashSet<T>[] newBuckets(int n) {
+		return (CountingOpenHashSet<T>[])new CountingOpenHashSet<?>[n];
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/** A list that keeps up to INLINE elements in fields and only switches to
+ *  an ArrayList when it grows past that. Most multimap keys have one to
+ *  three values so this avoids an ArrayList and its backing array per key.
+ */
+class SmallList<V> extends AbstractList<V> implements RandomAccess {
+	protected static final int INLINE = 3;
+
+	protected Object e0, e1, e2;
+
+	/** Number of inline elements; unused once big!=null */
+	protected int n;
+
+	/** Non-null once we've grown past INLINE elements */
+	protected ArrayList<V> big;
+
+	@Override
+	public V get(int i) {
+		if ( big!=null ) return big.get(i);
+		checkIndex(i, n);
+		return inline(i);
+	}
+
+	@Override
+	public V set(int i, V v) {
+		if ( big!=null ) return big.set(i, v);
+		V old = get(i);
+		setInline(i, v);
+		return old;
+	}
+
+	@Override
+	public void add(int i, V v) {
+		if ( big==null && n==INLINE ) {
+			big = new ArrayList<>(INLINE*2);
+			big.add(inline(0));
+			big.add(inline(1));
+			big.add(inline(2));
+			e0 = e1 = e2 = null;
+			n = 0;
+		}
+		if ( big!=null ) {
+			big.add(i, v);
+		}
+		else {
+			checkIndex(i, n+1);
+			for (int j = n; j>i; j--) setInline(j, get(j-1));
+			setInline(i, v);
+			n++;
+		}
+		modCount++;
+	}
+
+	@Override
+	public V remove(int i) {
+		modCount++;
+		if ( big!=null ) return big.remove(i);
+		V old = get(i);
+		for (int j = i; j<n-1; j++) setInline(j, get(j+1));
+		setInline(--n, null);
+		return old;
+	}
+
+	@Override
+	public int size() {
+		return big!=null ? big.size() : n;
+	}
+
+	@Override
+	public void clear() {
+		modCount++;
+		e0 = e1 = e2 = null;
+		n = 0;
+		big = null;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected V inline(int i) {
+		return (V)(i==0 ? e0 : i==1 ? e1 : e2);
+	}
+
+	protected void setInline(int i, Object v) {
+		if ( i==0 ) e0 = v;
+		else if ( i==1 ) e1 = v;
+		else e2 = v;
+	}
+
+	protected static void checkIndex(int i, int size) {
+		if ( i<0 || i>=size ) throw new IndexOutOfBoundsException("index "+i+" size "+size);
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/** A sorted set that keeps up to MAX_ARRAY elements in a small sorted array
+ *  and only switches to a TreeSet when it grows past that. Like TreeSet,
+ *  elements must be Comparable and iterate in natural order, so it's a
+ *  drop-in for the per-key TreeSet in {@link MultiMapOfSets} without a
+ *  tree node per value.
+ */
+class SmallSet<V> extends AbstractSet<V> {
+	protected static final int MAX_ARRAY = 8;
+
+	/** Sorted elements; null once we're big */
+	protected Object[] elements = new Object[1];
+	protected int n;
+
+	/** Non-null once we've grown past MAX_ARRAY elements */
+	protected TreeSet<V> big;
+
+	@Override
+	public boolean add(V v) {
+		if ( big!=null ) return big.add(v);
+		int i = find(v);
+		if ( i>=0 ) return false;
+		if ( n==MAX_ARRAY ) {
+			big = new TreeSet<>();
+			for (int j = 0; j<n; j++) big.add(element(j));
+			elements = null;
+			n = 0;
+			return big.add(v);
+		}
+		i = -(i+1);
+		if ( n==elements.length ) elements = Arrays.copyOf(elements, Math.min(n*2, MAX_ARRAY));
+		System.arraycopy(elements, i, elements, i+1, n-i);
+		elements[i] = v;
+		n++;
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if ( big!=null ) return big.contains(o);
+		return find(o)>=0;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if ( big!=null ) return big.remove(o);
+		int i = find(o);
+		if ( i<0 ) return false;
+		removeAt(i);
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return big!=null ? big.size() : n;
+	}
+
+	@Override
+	public void clear() {
+		elements = new Object[1];
+		n = 0;
+		big = null;
+	}
+
+	/** Iterate in natural order */
+	@Override
+	public Iterator<V> iterator() {
+		if ( big!=null ) return big.iterator();
+		return new Iterator<V>() {
+			int i = 0;
+			int last = -1;
+
+			@Override
+			public boolean hasNext() {
+				return i<n;
+			}
+
+			@Override
+			public V next() {
+				if ( i>=n ) throw new NoSuchElementException();
+				last = i;
+				return element(i++);
+			}
+
+			@Override
+			public void remove() {
+				if ( last<0 ) throw new IllegalStateException();
+				removeAt(last);
+				i = last;
+				last = -1;
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	protected V element(int i) {
+		return (V)elements[i];
+	}
+
+	protected void removeAt(int i) {
+		System.arraycopy(elements, i+1, elements, i, n-i-1);
+		elements[--n] = null;
+	}
+
+	/** Binary search like Arrays.binarySearch() */
+	protected int find(Object o) {
+		return Arrays.binarySearch(elements, 0, n, o);
+	}
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Track the most frequent keys of an unbounded stream in bounded memory
+ *  using the Space-Saving algorithm (Metwally et al.) over a
+ *  Stream-Summary structure.
+ *
+ *  We monitor at most capacity keys. A monitored key's add() bumps its
+ *  counter; an unmonitored key replaces the key with the smallest count,
+ *  counting up from the evicted count and remembering it as the key's max
+ *  overestimate, error(key). So count(key)-error(key) <= true count <= count(key)
+ *  and any key whose true count exceeds total()/capacity is guaranteed to be
+ *  monitored.
+ *
+ *  Counters live in a doubly-linked list of buckets, one per distinct count
+ *  in increasing order, so add() is O(1): a counter just moves to the next
+ *  bucket up. Not thread safe.
+ */
+public class SpaceSavingSet<T> {
+	protected static class Bucket<T> {
+		int count;
+		Counter<T> first; // counters at this count; doubly linked
+		Bucket<T> prev, next;
+		Bucket(int count) { this.count = count; }
+	}
+
+	protected static class Counter<T> {
+		T key;
+		int error;
+		Bucket<T> bucket;
+		Counter<T> prev, next;
+	}
+
+	protected final int capacity;
+
+	protected final Map<T, Counter<T>> counters;
+
+	/** Bucket with the smallest count; its counters are evicted first */
+	protected Bucket<T> min;
+
+	/** Bucket with the largest count */
+	protected Bucket<T> max;
+
+	protected long total;
+
+	public SpaceSavingSet(int capacity) {
+		if ( capacity<=0 ) {
+			throw new IllegalArgumentException("capacity must be positive: "+capacity);
+		}
+		this.capacity = capacity;
+		this.counters = new HashMap<>(capacity*4/3+1);
+	}
+
+	public boolean add(T key) {
+		return add(key, 1);
+	}
+
+	/** Add n occurrences of key; return true if key was not already
+	 *  monitored.
+	 */
+	public boolean add(T key, int n) {
+		if ( n<=0 ) {
+			throw new IllegalArgumentException("count increment must be positive: "+n);
+		}
+		total += n;
+		Counter<T> c = counters.get(key);
+		if ( c!=null ) {
+			increment(c, n);
+			return false;
+		}
+		if ( counters.size()<capacity ) {
+			c = new Counter<>();
+			c.key = key;
+			attach(c, bucketAtLeast(null, min, n));
+			counters.put(key, c);
+			return true;
+		}
+		// evict a key with min count; reuse its counter
+		c = min.first;
+		counters.remove(c.key);
+		c.key = key;
+		c.error = c.bucket.count;
+		counters.put(key, c);
+		increment(c, n);
+		return true;
+	}
+
+	/** Estimated count of key; overestimates by at most error(key). 0 if
+	 *  key is not monitored.
+	 */
+	public int count(T key) {
+		Counter<T> c = counters.get(key);
+		if ( c==null ) return 0;
+		return c.bucket.count;
+	}
+
+	/** How much count(key) might overestimate key's true count */
+	public int error(T key) {
+		Counter<T> c = counters.get(key);
+		if ( c==null ) return 0;
+		return c.error;
+	}
+
+	/** Is key's count guaranteed to be among the k largest? */
+	public boolean isGuaranteedTopK(T key, int k) {
+		Counter<T> c = counters.get(key);
+		if ( c==null ) return false;
+		int lowerBound = c.bucket.count - c.error;
+		// count how many monitored keys could beat key
+		int rank = 0;
+		for (Bucket<T> b = max; b!=null && b.count>lowerBound; b = b.prev) {
+			for (Counter<T> x = b.first; x!=null; x = x.next) {
+				if ( x!=c ) rank++;
+			}
+		}
+		return rank<k;
+	}
+
+	/** Total of all counts added, including those for evicted keys */
+	public long total() {
+		return total;
+	}
+
+	/** Number of monitored keys, never more than capacity */
+	public int size() {
+		return counters.size();
+	}
+
+	public boolean isEmpty() {
+		return counters.isEmpty();
+	}
+
+	public boolean contains(T key) {
+		return counters.containsKey(key);
+	}
+
+	/** Return the monitored key with the max count; null if empty */
+	public T argmax() {
+		if ( max==null ) return null;
+		return max.first.key;
+	}
+
+	/** Monitored keys in no particular order */
+	public Set<T> keySet() {
+		return Collections.unmodifiableSet(counters.keySet());
+	}
+
+	/** Counts of monitored keys, largest first */
+	public List<Integer> counts() {
+		List<Integer> result = new ArrayList<>(counters.size());
+		for (Bucket<T> b = max; b!=null; b = b.prev) {
+			for (Counter<T> c = b.first; c!=null; c = c.next) {
+				result.add(b.count);
+			}
+		}
+		return result;
+	}
+
+	/** Return the k monitored keys with largest counts, most frequent first;
+	 *  just walks down from the max bucket.
+	 */
+	public List<T> topK(int k) {
+		List<T> result = new ArrayList<>(Math.min(k, counters.size()));
+		for (Bucket<T> b = max; b!=null && result.size()<k; b = b.prev) {
+			for (Counter<T> c = b.first; c!=null && result.size()<k; c = c.next) {
+				result.add(c.key);
+			}
+		}
+		return result;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public void clear() {
+		counters.clear();
+		min = max = null;
+		total = 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		int n = 0;
+		for (Bucket<T> b = max; b!=null; b = b.prev) {
+			for (Counter<T> c = b.first; c!=null; c = c.next) {
+				if ( n>0 ) buf.append(", ");
+				buf.append(String.format("%s:%d", c.key, b.count));
+				n++;
+			}
+		}
+		buf.append("}");
+		return buf.toString();
+	}
+
+	// stream-summary support
+
+	/** Move c from its bucket to the bucket for count+n, creating it if needed */
+	protected void increment(Counter<T> c, int n) {
+		Bucket<T> from = c.bucket;
+		int target = from.count + n;
+		Bucket<T> dest = bucketAtLeast(from, from.next, target);
+		detach(c);
+		attach(c, dest);
+	}
+
+	/** Find or create bucket with count target, searching upward from
+	 *  start; after is the bucket just below start (null if start is min).
+	 */
+	protected Bucket<T> bucketAtLeast(Bucket<T> after, Bucket<T> start, int target) {
+		Bucket<T> b = start;
+		while ( b!=null && b.count<target ) {
+			after = b;
+			b = b.next;
+		}
+		if ( b!=null && b.count==target ) return b;
+		Bucket<T> nb = new Bucket<>(target);
+		nb.prev = after;
+		nb.next = b;
+		if ( after!=null ) after.next = nb; else min = nb;
+		if ( b!=null ) b.prev = nb; else max = nb;
+		return nb;
+	}
+
+	protected void attach(Counter<T> c, Bucket<T> b) {
+		c.bucket = b;
+		c.prev = null;
+		c.next = b.first;
+		if ( b.first!=null ) b.first.prev = c;
+		b.first = c;
+	}
+
+	/** Unlink c from its bucket, dropping the bucket if it becomes empty */
+	protected void detach(Counter<T> c) {
+		Bucket<T> b = c.bucket;
+		if ( c.prev!=null ) c.prev.next = c.next; else b.first = c.next;
+		if ( c.next!=null ) c.next.prev = c.prev;
+		c.prev = c.next = null;
+		c.bucket = null;
+		if ( b.first==null ) {
+			if ( b.prev!=null ) b.prev.next = b.next; else min = b.next;
+			if ( b.next!=null ) b.next.prev = b.prev; else max = b.prev;
+		}
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import static us.parr.lib.ParrtMath.log2;
+
+/** Accumulate a double weight for each int in 0..maxSetValue. Like
+ *  {@link CountingDenseIntSet}, a key is a member only if its weight is
+ *  positive and total(), size(), and argmax() are maintained as weights
+ *  change rather than by scanning.
+ */
+public class WeightedCountingDenseIntSet implements WeightedCountingSet<Integer> {
+	/** The weights[i] is the total weight of i; 0 implies not there. */
+	protected final double[] weights;
+
+	/** Sum of weights[i] for all i */
+	protected double total;
+
+	/** Number of i with weights[i]>0 */
+	protected int n;
+
+	/** First i with max weights[i]>0, or -1 if none; valid only if !maxDirty */
+	protected int maxIndex = -1;
+
+	/** Set when the max weight decreases and we must rescan to find argmax */
+	protected boolean maxDirty;
+
+	public WeightedCountingDenseIntSet(int maxSetValue) {
+		weights = new double[maxSetValue+1];
+	}
+
+	public WeightedCountingDenseIntSet(WeightedCountingDenseIntSet old) {
+		weights = Arrays.copyOf(old.weights, old.weights.length);
+		total = old.total;
+		n = old.n;
+		maxIndex = old.maxIndex;
+		maxDirty = old.maxDirty;
+	}
+
+	public void add(int key, double weight) {
+		update(key, weights[key]+weight);
+	}
+
+	@Override
+	public void add(Integer key, double weight) {
+		add(key.intValue(), weight);
+	}
+
+	public void set(int key, double weight) {
+		update(key, weight);
+	}
+
+	@Override
+	public void set(Integer key, double weight) {
+		update(key, weight);
+	}
+
+	public double weight(int key) {
+		return weights[key];
+	}
+
+	@Override
+	public double weight(Integer key) {
+		return weights[key];
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if ( o==null || !(o instanceof Integer) ) return false;
+		int v = (Integer)o;
+		if ( v<0 || v>=weights.length ) return false;
+		return weights[v]>0.0;
+	}
+
+	@Override
+	public double total() {
+		return total;
+	}
+
+	@Override
+	public int size() {
+		return n;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return n==0;
+	}
+
+	@Override
+	public Set<Integer> keySet() {
+		DenseIntSet keys = new DenseIntSet(weights.length-1);
+		for (int i = 0; i<weights.length; i++) {
+			if ( weights[i]>0.0 ) {
+				keys.add(i);
+			}
+		}
+		return keys;
+	}
+
+	/** Return the underlying weights; don't alter them or total(), size(),
+	 *  and argmax() will be wrong.
+	 */
+	public double[] toDenseArray() {
+		return weights;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(weights, 0.0);
+		total = 0.0;
+		n = 0;
+		maxIndex = -1;
+		maxDirty = false;
+	}
+
+	/** Return first key with max weight or -1 if set is empty */
+	@Override
+	public Integer argmax() {
+		if ( maxDirty ) {
+			double m = 0.0;
+			int mi = -1;
+			for (int i = 0; i<weights.length; i++) {
+				if ( weights[i]>m ) {
+					m = weights[i];
+					mi = i;
+				}
+			}
+			maxIndex = mi;
+			maxDirty = false;
+		}
+		return maxIndex;
+	}
+
+	@Override
+	public double entropy() {
+		double entropy = 0.0;
+		for (int i = 0; i<weights.length; i++) {
+			if ( weights[i]<=0.0 ) continue; // avoid log(0), which is undefined
+			double p = weights[i] / total;
+			entropy += p * log2(p);
+		}
+		entropy = -entropy;
+		return entropy;
+	}
+
+	@Override
+	public double gini() {
+		double impurity = 0.0;
+		for (int i = 0; i<weights.length; i++) {
+			if ( weights[i]==0.0 ) continue;
+			double p = weights[i] / total;
+			impurity += p * (1-p);
+		}
+		return impurity;
+	}
+
+	/** Set weights[i] to w and bring total, n, and max up to date */
+	protected void update(int i, double w) {
+		double old = weights[i];
+		weights[i] = w;
+		total += w - old;
+		if ( old<=0.0 && w>0.0 ) n++;
+		else if ( old>0.0 && w<=0.0 ) n--;
+		if ( maxDirty ) return; // argmax() will rescan anyway
+		if ( w>0.0 && (maxIndex<0 || w>weights[maxIndex] || (w==weights[maxIndex] && i<maxIndex)) ) {
+			maxIndex = i;
+		}
+		else if ( i==maxIndex && w<old ) {
+			maxDirty = true;
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		int m = 0;
+		for (int i = 0; i<weights.length; i++) {
+			if ( weights[i]>0.0 ) {
+				if ( m>0 ) buf.append(", ");
+				buf.append(i);
+				buf.append("=");
+				buf.append(weights[i]);
+				m++;
+			}
+		}
+		buf.append("}");
+		return buf.toString();
+	}
+}
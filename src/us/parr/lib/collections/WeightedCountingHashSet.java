@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static us.parr.lib.ParrtMath.log2;
+
+/** Accumulate a double weight per key; weights are {@link MutableDouble}s
+ *  bumped in place so only a new key allocates. Not thread safe.
+ */
+public class WeightedCountingHashSet<T> implements WeightedCountingSet<T> {
+	protected HashMap<T, MutableDouble> data = new HashMap<>();
+
+	/** Sum of all weights, kept up to date so total() is O(1) */
+	protected double total;
+
+	public WeightedCountingHashSet() {
+	}
+
+	public WeightedCountingHashSet(WeightedCountingSet<T> old) {
+		for (T key : old.keySet()) {
+			set(key, old.weight(key));
+		}
+	}
+
+	@Override
+	public void add(T key, double weight) {
+		MutableDouble old = data.get(key);
+		if ( old==null ) {
+			data.put(key, new MutableDouble(weight));
+		}
+		else {
+			old.v += weight;
+		}
+		total += weight;
+	}
+
+	@Override
+	public void set(T key, double weight) {
+		MutableDouble old = data.get(key);
+		if ( old==null ) {
+			data.put(key, new MutableDouble(weight));
+			total += weight;
+		}
+		else {
+			total += weight - old.v;
+			old.v = weight;
+		}
+	}
+
+	@Override
+	public double weight(T key) {
+		MutableDouble value = data.get(key);
+		if ( value==null ) return 0.0;
+		return value.v;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return data.containsKey(o);
+	}
+
+	@Override
+	public double total() {
+		return total;
+	}
+
+	@Override
+	public int size() {
+		return data.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return data.isEmpty();
+	}
+
+	@Override
+	public Set<T> keySet() {
+		return data.keySet();
+	}
+
+	@Override
+	public void clear() {
+		data.clear();
+		total = 0.0;
+	}
+
+	public boolean remove(Object o) {
+		MutableDouble old = data.remove(o);
+		if ( old==null ) return false;
+		total -= old.v;
+		return true;
+	}
+
+	@Override
+	public T argmax() {
+		T keyOfMax = null;
+		double max = 0.0;
+		for (Map.Entry<T, MutableDouble> entry : data.entrySet()) {
+			double w = entry.getValue().v;
+			if ( keyOfMax==null || w>max ) {
+				keyOfMax = entry.getKey();
+				max = w;
+			}
+		}
+		return keyOfMax;
+	}
+
+	@Override
+	public double entropy() {
+		double entropy = 0.0;
+		for (MutableDouble w : data.values()) {
+			if ( w.v<=0.0 ) continue; // avoid log(0), which is undefined
+			double p = w.v / total;
+			entropy += p * log2(p);
+		}
+		entropy = -entropy;
+		return entropy;
+	}
+
+	@Override
+	public double gini() {
+		double impurity = 0.0;
+		for (MutableDouble w : data.values()) {
+			double p = w.v / total;
+			impurity += p * (1-p);
+		}
+		return impurity;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{");
+		int n = 0;
+		for (Map.Entry<T, MutableDouble> entry : data.entrySet()) {
+			if ( n>0 ) buf.append(", ");
+			buf.append(String.format("%s:%s", entry.getKey(), entry.getValue()));
+			n++;
+		}
+		buf.append("}");
+		return buf.toString();
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib.collections;
+
+import java.util.Set;
+
+/** Like a {@link CountingSet} but each key accumulates a double weight
+ *  rather than an int count; useful for sample-weighted and boosting code.
+ */
+public interface WeightedCountingSet<T> {
+	/** Add weight to key's total weight */
+	void add(T key, double weight);
+
+	void set(T key, double weight);
+
+	/** Weight of key or 0.0 if not in set */
+	double weight(T key);
+
+	boolean contains(Object o);
+
+	/** Sum of all weights */
+	double total();
+
+	/** How many keys */
+	int size();
+
+	boolean isEmpty();
+
+	Set<T> keySet();
+
+	void clear();
+
+	/** Return the key with the max weight; tie goes to first key at max found. */
+	T argmax();
+
+	/** Entropy of weights normalized by total() */
+	double entropy();
+
+	/** Gini impurity of weights normalized by total() */
+	double gini();
+}
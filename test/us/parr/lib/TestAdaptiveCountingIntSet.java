@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.AdaptiveCountingIntSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class TestAdaptiveCountingIntSet {
+	@Test public void testFewSmallKeysStaySparse() {
+		AdaptiveCountingIntSet s = new AdaptiveCountingIntSet();
+		for (int i = 0; i<AdaptiveCountingIntSet.DEFAULT_MIN_DENSE_ENTRIES-1; i++) {
+			s.add(i);
+		}
+		assertFalse(s.isDense());
+	}
+
+	@Test public void testSmallKeyThenHugeKeyStaysSparse() {
+		AdaptiveCountingIntSet s = new AdaptiveCountingIntSet();
+		s.add(0);
+		s.add(50_000_000);
+		assertFalse(s.isDense());
+		assertEquals(2, s.size());
+		assertEquals(1, s.count(50_000_000));
+	}
+
+	@Test public void testSwitchesToDenseWhenRangeFills() {
+		AdaptiveCountingIntSet s = new AdaptiveCountingIntSet();
+		for (int i = 0; i<100; i++) {
+			s.add(i);
+			s.add(i);
+		}
+		assertTrue(s.isDense());
+		assertEquals(100, s.size());
+		assertEquals(200, s.total());
+		for (int i = 0; i<100; i++) {
+			assertEquals(2, s.count(i));
+		}
+	}
+
+	@Test public void testDenseGrowsWhileOccupied() {
+		AdaptiveCountingIntSet s = new AdaptiveCountingIntSet();
+		for (int i = 0; i<1000; i++) {
+			s.add(i);
+		}
+		assertTrue(s.isDense());
+		assertEquals(1000, s.size());
+	}
+
+	@Test public void testHugeKeyRevertsDenseToSparse() {
+		AdaptiveCountingIntSet s = new AdaptiveCountingIntSet();
+		for (int i = 0; i<100; i++) {
+			s.add(i);
+		}
+		assertTrue(s.isDense());
+		s.add(50_000_000);
+		assertFalse(s.isDense());
+		assertEquals(101, s.size());
+		assertEquals(101, s.total());
+		assertEquals(1, s.count(50_000_000));
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i<100; i++) {
+			expected.add(i);
+		}
+		expected.add(50_000_000);
+		assertEquals(expected, new ArrayList<>(s.keySet()));
+	}
+}
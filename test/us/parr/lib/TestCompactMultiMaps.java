@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.CompactMultiMapOfLists;
+import us.parr.lib.collections.CompactMultiMapOfSets;
+import us.parr.lib.collections.MultiMap;
+import us.parr.lib.collections.MultiMapOfLists;
+import us.parr.lib.collections.MultiMapOfSets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+/** The per-key SmallList and SmallSet are package-private, so reach them
+ *  through get() on the compact maps and check them against ArrayList and
+ *  TreeSet, mostly at sizes that cross the inline limit in both directions.
+ */
+public class TestCompactMultiMaps {
+	public static final int LIST_INLINE = 3;  // SmallList.INLINE
+	public static final int SET_ARRAY = 8;    // SmallSet.MAX_ARRAY
+
+	@Test public void testListSpillsInOrder() {
+		List<String> l = newList("a");
+		l.add("b");
+		l.add("c");
+		assertEquals(LIST_INLINE, l.size());
+		l.add(1, "x"); // insert in the middle exactly as the list spills
+		assertEquals(Arrays.asList("a", "x", "b", "c"), l);
+		assertEquals("x", l.set(1, "y"));
+		assertEquals("y", l.remove(1));
+		assertEquals("c", l.remove(2));
+		assertEquals(Arrays.asList("a", "b"), l); // stays spilled but must behave the same
+		l.clear();
+		assertTrue(l.isEmpty());
+		l.add("z");
+		assertEquals(Arrays.asList("z"), l);
+	}
+
+	@Test public void testListInlineBounds() {
+		List<String> l = newList("a");
+		l.add("b");
+		l.remove(1);
+		assertOutOfBounds(l, 1); // e1 slot was cleared, and size is 1 anyway
+		assertOutOfBounds(l, -1);
+		try {
+			l.add(3, "x");
+			fail("added past the end");
+		}
+		catch (IndexOutOfBoundsException expected) {
+		}
+		l.add(1, "b");
+		l.add(0, "_");
+		assertEquals(Arrays.asList("_", "a", "b"), l);
+		assertOutOfBounds(l, 3);
+	}
+
+	@Test public void testListMatchesArrayList() {
+		Random r = new Random(1);
+		List<Integer> l = newList(0);
+		List<Integer> oracle = new ArrayList<>(Arrays.asList(0));
+		for (int i = 0; i<50_000; i++) {
+			int size = oracle.size();
+			int v = r.nextInt(100);
+			switch ( r.nextInt(6) ) {
+				case 0 :
+					if ( size>0 ) {
+						int j = r.nextInt(size);
+						assertEquals(oracle.remove(j), l.remove(j));
+					}
+					break;
+				case 1 :
+					if ( size>0 ) {
+						int j = r.nextInt(size);
+						assertEquals(oracle.set(j, v), l.set(j, v));
+					}
+					break;
+				case 2 :
+					assertEquals(oracle.remove((Integer)v), l.remove((Integer)v));
+					break;
+				case 3 :
+					if ( size>LIST_INLINE+2 || r.nextInt(20)==0 ) {
+						oracle.clear();
+						l.clear();
+					}
+					break;
+				default :
+					int j = r.nextInt(size+1);
+					oracle.add(j, v);
+					l.add(j, v);
+			}
+			assertEquals(oracle, l);
+			assertEquals(oracle.hashCode(), l.hashCode());
+		}
+		ListIterator<Integer> it = l.listIterator();
+		ListIterator<Integer> oit = oracle.listIterator();
+		while ( it.hasNext() ) {
+			int v = it.next();
+			assertEquals((Integer)v, oit.next());
+			if ( v%2==0 ) {
+				it.remove();
+				oit.remove();
+			}
+			else {
+				it.add(v);
+				oit.add(v);
+			}
+		}
+		assertEquals(oracle, l);
+	}
+
+	@Test public void testSetSpillsAndStaysSorted() {
+		Set<Integer> s = newSet(SET_ARRAY*10);
+		TreeSet<Integer> oracle = new TreeSet<>(Arrays.asList(SET_ARRAY*10));
+		for (int i = SET_ARRAY-1; i>=1; i--) { // descending, so every add shifts the array
+			assertTrue(s.add(i*10));
+			oracle.add(i*10);
+			assertEquals(new ArrayList<>(oracle), new ArrayList<>(s));
+		}
+		assertEquals(SET_ARRAY, s.size());
+		assertFalse(s.add(40)); // duplicate when full must not spill
+		assertEquals(SET_ARRAY, s.size());
+		assertTrue(s.add(45)); // spills
+		oracle.add(45);
+		assertEquals(new ArrayList<>(oracle), new ArrayList<>(s));
+		assertTrue(s.contains(45));
+		assertTrue(s.contains(10));
+		assertFalse(s.contains(11));
+		assertTrue(s.remove(10));
+		assertFalse(s.remove(10));
+		s.clear();
+		assertTrue(s.isEmpty());
+		assertTrue(s.add(1));
+		assertEquals(new ArrayList<>(Arrays.asList(1)), new ArrayList<>(s));
+	}
+
+	@Test public void testSetMatchesTreeSet() {
+		Random r = new Random(2);
+		Set<Integer> s = newSet(0);
+		TreeSet<Integer> oracle = new TreeSet<>(Arrays.asList(0));
+		for (int i = 0; i<50_000; i++) {
+			int v = r.nextInt(SET_ARRAY*2);
+			switch ( r.nextInt(5) ) {
+				case 0 :
+					assertEquals(oracle.remove(v), s.remove(v));
+					break;
+				case 1 :
+					assertEquals(oracle.contains(v), s.contains(v));
+					break;
+				case 2 :
+					if ( oracle.size()>SET_ARRAY+2 || r.nextInt(20)==0 ) {
+						oracle.clear();
+						s.clear();
+					}
+					break;
+				default :
+					assertEquals(oracle.add(v), s.add(v));
+			}
+			assertEquals(oracle.size(), s.size());
+			assertEquals(new ArrayList<>(oracle), new ArrayList<>(s));
+			assertEquals(oracle, s);
+		}
+	}
+
+	@Test public void testSetIteratorRemoveInline() {
+		Set<Integer> s = newSet(1);
+		for (int v : new int[] {2, 3, 4, 5}) s.add(v);
+		Iterator<Integer> it = s.iterator();
+		try {
+			it.remove();
+			fail("removed before next()");
+		}
+		catch (IllegalStateException expected) {
+		}
+		while ( it.hasNext() ) {
+			if ( it.next()%2==1 ) it.remove();
+		}
+		assertEquals(new ArrayList<>(Arrays.asList(2, 4)), new ArrayList<>(s));
+	}
+
+	@Test public void testMapsMatchNonCompactMaps() {
+		Random r = new Random(3);
+		CompactMultiMapOfLists<Integer, Integer> cl = new CompactMultiMapOfLists<>();
+		MultiMapOfLists<Integer, Integer> ml = new MultiMapOfLists<>();
+		CompactMultiMapOfSets<Integer, Integer> cs = new CompactMultiMapOfSets<>();
+		MultiMapOfSets<Integer, Integer> ms = new MultiMapOfSets<>();
+		for (int i = 0; i<20_000; i++) {
+			int k = r.nextInt(1000);
+			int v = r.nextInt(30);
+			cl.put(k, v);
+			ml.put(k, v);
+			cs.put(k, v);
+			ms.put(k, v);
+		}
+		assertSame(ml, cl);
+		assertSame(ms, cs);
+		assertEquals(ml.get(7), cl.freeze().get(7));
+		assertEquals(new ArrayList<>(ms.get(7)), cs.freeze().get(7));
+	}
+
+	protected static <K, V> void assertSame(MultiMap<K, V> oracle, MultiMap<K, V> m) {
+		assertEquals(oracle.size(), m.size());
+		assertEquals(new ArrayList<>(oracle.keySet()), new ArrayList<>(m.keySet()));
+		for (Map.Entry<K, Collection<V>> e : oracle.entrySet()) {
+			assertEquals(new ArrayList<>(e.getValue()), new ArrayList<>(m.get(e.getKey())));
+		}
+	}
+
+	protected static <V> List<V> newList(V first) {
+		CompactMultiMapOfLists<String, V> m = new CompactMultiMapOfLists<>();
+		m.put("k", first);
+		return m.get("k");
+	}
+
+	protected static <V> Set<V> newSet(V first) {
+		CompactMultiMapOfSets<String, V> m = new CompactMultiMapOfSets<>();
+		m.put("k", first);
+		return (Set<V>)m.get("k");
+	}
+
+	protected static void assertOutOfBounds(List<?> l, int i) {
+		try {
+			l.get(i);
+			fail("read "+i+" of list size "+l.size());
+		}
+		catch (IndexOutOfBoundsException expected) {
+		}
+	}
+}
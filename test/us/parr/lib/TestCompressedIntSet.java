@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.CompressedIntSet;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/** Check CompressedIntSet against a TreeSet ordered like it, by unsigned value */
+public class TestCompressedIntSet {
+	public static final int CHUNK = 65536;
+
+	@Test public void testRandomAddRemoveAroundChunkBoundaries() {
+		Random r = new Random(1);
+		CompressedIntSet s = new CompressedIntSet();
+		TreeSet<Integer> oracle = newOracle();
+		for (int i = 0; i<200_000; i++) {
+			int x = nearBoundary(r);
+			if ( r.nextInt(3)==0 ) assertEquals(oracle.remove(x), s.remove(x));
+			else assertEquals(oracle.add(x), s.add(x));
+		}
+		assertSame(oracle, s);
+		for (int i = 0; i<10_000; i++) {
+			int x = nearBoundary(r);
+			assertEquals(oracle.contains(x), s.contains(x));
+		}
+	}
+
+	@Test public void testArrayBitmapConversions() {
+		CompressedIntSet s = new CompressedIntSet();
+		TreeSet<Integer> oracle = newOracle();
+		for (int i = 0; i<10_000; i++) { // past 4096 so chunk 1 becomes a bitmap
+			s.add(CHUNK + i*3);
+			oracle.add(CHUNK + i*3);
+		}
+		assertSame(oracle, s);
+		for (int i = 0; i<9_000; i++) { // and back under 4096
+			s.remove(CHUNK + i*3);
+			oracle.remove(CHUNK + i*3);
+		}
+		assertSame(oracle, s);
+	}
+
+	@Test public void testSetAlgebra() {
+		Random r = new Random(2);
+		CompressedIntSet a = new CompressedIntSet();
+		CompressedIntSet b = new CompressedIntSet();
+		TreeSet<Integer> oa = newOracle();
+		TreeSet<Integer> ob = newOracle();
+		for (int i = 0; i<50_000; i++) {
+			int x = nearBoundary(r);
+			a.add(x);
+			oa.add(x);
+			int y = i<10_000 ? 3*CHUNK + i : nearBoundary(r); // b gets a bitmap chunk too
+			b.add(y);
+			ob.add(y);
+		}
+		TreeSet<Integer> or = newOracle();
+		or.addAll(oa);
+		or.addAll(ob);
+		assertSame(or, a.or(b));
+		TreeSet<Integer> and = newOracle();
+		and.addAll(oa);
+		and.retainAll(ob);
+		assertSame(and, a.and(b));
+		TreeSet<Integer> andNot = newOracle();
+		andNot.addAll(oa);
+		andNot.removeAll(ob);
+		assertSame(andNot, a.andNot(b));
+	}
+
+	@Test public void testRunOptimize() {
+		CompressedIntSet s = new CompressedIntSet();
+		TreeSet<Integer> oracle = newOracle();
+		for (int x = CHUNK-100; x<3*CHUNK+100; x++) { // one long run across chunks
+			s.add(x);
+			oracle.add(x);
+		}
+		for (int x = 5*CHUNK; x<5*CHUNK+2000; x += 2) { // an array chunk runs don't help
+			s.add(x);
+			oracle.add(x);
+		}
+		long before = s.sizeInBytes();
+		s.runOptimize();
+		assertTrue(s.sizeInBytes()<before);
+		assertSame(oracle, s);
+		for (int x = 2*CHUNK-10; x<2*CHUNK+10; x += 3) { // punch holes in runs
+			s.remove(x);
+			oracle.remove(x);
+		}
+		s.add(-1);
+		oracle.add(-1);
+		assertSame(oracle, s);
+	}
+
+	@Test public void testBytesRoundTrip() {
+		Random r = new Random(3);
+		CompressedIntSet s = new CompressedIntSet();
+		for (int i = 0; i<20_000; i++) {
+			s.add(nearBoundary(r));
+		}
+		for (int x = 7*CHUNK; x<7*CHUNK+5000; x++) {
+			s.add(x);
+		}
+		s.add(Integer.MAX_VALUE);
+		s.add(Integer.MIN_VALUE);
+		s.add(-1);
+		s.runOptimize();
+		CompressedIntSet t = CompressedIntSet.fromBytes(s.toBytes());
+		assertEquals(new ArrayList<>(s), new ArrayList<>(t));
+		assertEquals(0, CompressedIntSet.fromBytes(new CompressedIntSet().toBytes()).size());
+	}
+
+	@Test public void testRemoveAllAndRetainAllUseIteratorRemove() {
+		Random r = new Random(4);
+		CompressedIntSet s = new CompressedIntSet();
+		TreeSet<Integer> oracle = newOracle();
+		for (int i = 0; i<20_000; i++) {
+			int x = nearBoundary(r);
+			s.add(x);
+			oracle.add(x);
+		}
+		TreeSet<Integer> other = newOracle();
+		for (int i = 0; i<60_000; i++) { // bigger than s so removeAll iterates s
+			other.add(nearBoundary(r));
+		}
+		assertTrue(s.size()<=other.size());
+		assertEquals(oracle.removeAll(other), s.removeAll(other));
+		assertSame(oracle, s);
+		for (int i = 0; i<5_000; i++) {
+			int x = nearBoundary(r);
+			s.add(x);
+			oracle.add(x);
+		}
+		assertEquals(oracle.retainAll(other), s.retainAll(other));
+		assertSame(oracle, s);
+		assertEquals(oracle.removeIf(x -> x%3==0), s.removeIf(x -> x%3==0));
+		assertSame(oracle, s);
+		s.removeIf(x -> true);
+		assertTrue(s.isEmpty());
+		assertFalse(s.iterator().hasNext());
+	}
+
+	/** Mostly values within a few hundred of a multiple of 65536, some anywhere */
+	protected static int nearBoundary(Random r) {
+		if ( r.nextInt(50)==0 ) return r.nextInt();
+		return (r.nextInt(8)-1)*CHUNK + r.nextInt(600)-300;
+	}
+
+	protected static TreeSet<Integer> newOracle() {
+		return new TreeSet<>(Integer::compareUnsigned);
+	}
+
+	protected static void assertSame(TreeSet<Integer> oracle, CompressedIntSet s) {
+		assertEquals(oracle.size(), s.size());
+		assertEquals(new ArrayList<>(oracle), new ArrayList<>(s));
+		ArrayList<Integer> each = new ArrayList<>();
+		s.forEachInt(each::add);
+		assertEquals(new ArrayList<>(oracle), each);
+	}
+}
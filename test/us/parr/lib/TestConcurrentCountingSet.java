@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.ConcurrentCountingSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class TestConcurrentCountingSet {
+	public static final int NTHREADS = 4;
+
+	@Test public void testParallelAddsAllCount() throws Exception {
+		ConcurrentCountingSet<Integer> s = new ConcurrentCountingSet<>();
+		int nadds = 100_000;
+		run(id -> {
+			for (int i = 0; i<nadds; i++) {
+				s.add(i%100); // every thread hits the same hot keys
+			}
+		});
+		assertEquals(NTHREADS*nadds, s.total());
+		assertEquals(100, s.size());
+		for (int k = 0; k<100; k++) {
+			assertEquals(NTHREADS*nadds/100, s.count(k));
+		}
+	}
+
+	/** Adds racing with set() and remove() of the same keys may be lost,
+	 *  but total() must still agree with the counts that survive.
+	 */
+	@Test public void testTotalMatchesCountsAfterRacingRemoveAndSet() throws Exception {
+		for (int round = 0; round<5; round++) {
+			ConcurrentCountingSet<Integer> s = new ConcurrentCountingSet<>();
+			run(id -> {
+				Random r = new Random(id);
+				for (int i = 0; i<100_000; i++) {
+					int k = r.nextInt(8);
+					switch ( id ) {
+						case 0 :
+							if ( i%4==0 ) s.set(k, r.nextInt(10));
+							else s.remove(k);
+							break;
+						default :
+							s.add(k, 1+r.nextInt(3));
+					}
+				}
+			});
+			int sum = 0;
+			for (int c : s.counts()) {
+				sum += c;
+			}
+			assertEquals(sum, s.total());
+			assertTrue(s.total()>=0);
+		}
+	}
+
+	interface Worker {
+		void run(int id);
+	}
+
+	protected static void run(Worker w) throws Exception {
+		List<Throwable> errors = new ArrayList<>();
+		Thread[] threads = new Thread[NTHREADS];
+		for (int t = 0; t<NTHREADS; t++) {
+			int id = t;
+			threads[t] = new Thread(() -> {
+				try {
+					w.run(id);
+				}
+				catch (Throwable e) {
+					synchronized (errors) { errors.add(e); }
+				}
+			});
+		}
+		for (Thread t : threads) t.start();
+		for (Thread t : threads) t.join();
+		assertTrue(errors.toString(), errors.isEmpty());
+	}
+}
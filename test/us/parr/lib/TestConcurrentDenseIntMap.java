@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.ConcurrentDenseIntMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class TestConcurrentDenseIntMap {
+	public static final int NTHREADS = 4;
+
+	@Test public void testGrowsPastEnd() {
+		ConcurrentDenseIntMap<String> m = new ConcurrentDenseIntMap<>(2);
+		m.put(1, "a");
+		m.put(5000, "b");
+		assertEquals("a", m.get(1));
+		assertEquals("b", m.get(5000));
+		assertTrue(m.length()>5000);
+		assertEquals("b", m.remove(5000));
+		assertNull(m.get(5000));
+		assertEquals(1, m.size());
+	}
+
+	/** Threads own disjoint keys and check every result against their own
+	 *  model while the table grows underneath them, sometimes by big jumps.
+	 */
+	@Test public void testConcurrentUpdatesDuringResize() throws Exception {
+		for (int round = 0; round<5; round++) {
+			ConcurrentDenseIntMap<Integer> m = new ConcurrentDenseIntMap<>(1);
+			List<Map<Integer, Integer>> models = new ArrayList<>();
+			List<Throwable> errors = new ArrayList<>();
+			Thread[] threads = new Thread[NTHREADS];
+			for (int t = 0; t<NTHREADS; t++) {
+				int id = t;
+				Map<Integer, Integer> model = new HashMap<>();
+				models.add(model);
+				threads[t] = new Thread(() -> {
+					Random r = new Random(id);
+					try {
+						for (int i = 0; i<50_000; i++) {
+							int base = r.nextInt(100)==0 ? r.nextInt(500_000) : r.nextInt(1+i/2);
+							int k = (base/NTHREADS)*NTHREADS + id;
+							switch ( r.nextInt(4) ) {
+								case 0 :
+								case 1 :
+									assertEquals(model.put(k, i), m.put(k, i));
+									break;
+								case 2 :
+									assertEquals(model.remove(k), m.remove(k));
+									break;
+								default :
+									assertEquals(model.get(k), m.get(k));
+							}
+						}
+					}
+					catch (Throwable e) {
+						synchronized (errors) { errors.add(e); }
+					}
+				});
+			}
+			for (Thread t : threads) t.start();
+			for (Thread t : threads) t.join();
+			assertTrue(errors.toString(), errors.isEmpty());
+			int n = 0;
+			for (Map<Integer, Integer> model : models) {
+				n += model.size();
+				for (Map.Entry<Integer, Integer> e : model.entrySet()) {
+					assertEquals(e.getValue(), m.get(e.getKey()));
+				}
+			}
+			assertEquals(n, m.size());
+		}
+	}
+
+	@Test public void testComputeIfAbsentAgreesAcrossThreads() throws Exception {
+		ConcurrentDenseIntMap<Object> m = new ConcurrentDenseIntMap<>(1);
+		int nkeys = 20_000;
+		Object[][] seen = new Object[NTHREADS][nkeys];
+		AtomicInteger calls = new AtomicInteger();
+		Thread[] threads = new Thread[NTHREADS];
+		for (int t = 0; t<NTHREADS; t++) {
+			int id = t;
+			threads[t] = new Thread(() -> {
+				for (int k = 0; k<nkeys; k++) {
+					seen[id][k] = m.computeIfAbsent(k, x -> { calls.incrementAndGet(); return new Object(); });
+				}
+			});
+		}
+		for (Thread t : threads) t.start();
+		for (Thread t : threads) t.join();
+		assertEquals(nkeys, m.size());
+		assertTrue(calls.get()>=nkeys);
+		for (int k = 0; k<nkeys; k++) {
+			for (int t = 0; t<NTHREADS; t++) {
+				assertTrue(seen[t][k]==m.get(k));
+			}
+		}
+	}
+}
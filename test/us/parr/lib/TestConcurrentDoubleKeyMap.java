@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.ConcurrentDoubleKeyMap;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class TestConcurrentDoubleKeyMap {
+	public static final int TRIALS = 20000;
+	public static final int TIMEOUT_SECONDS = 10;
+
+	@Test public void testRemoveLastEntryKeepsInnerMap() {
+		ConcurrentDoubleKeyMap<Integer, Integer, String> m = new ConcurrentDoubleKeyMap<>();
+		m.put(1, 0, "a");
+		assertEquals("a", m.remove(1, 0));
+		assertNull(m.get(1, 0));
+		assertTrue(m.isEmpty());
+		assertEquals(0, m.size());
+		m.put(1, 1, "b");
+		assertEquals("b", m.get(1, 1));
+	}
+
+	/** A put racing with removal of the last entry for the same key1 must stick.
+	 *  A failed remover breaks any barrier we're waiting on; if we haven't
+	 *  reached one yet, the timeout stops us and we report its failure.
+	 */
+	@Test public void testPutRacingRemoveOfLastEntryIsNotLost() throws Exception {
+		ConcurrentDoubleKeyMap<Integer, Integer, Integer> m = new ConcurrentDoubleKeyMap<>();
+		CyclicBarrier start = new CyclicBarrier(2);
+		CyclicBarrier done = new CyclicBarrier(2);
+		AtomicReference<Throwable> error = new AtomicReference<>();
+		Thread remover = new Thread(() -> {
+			try {
+				for (int t = 0; t<TRIALS; t++) {
+					start.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+					m.remove(1, 0);
+					done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				}
+			}
+			catch (Throwable e) {
+				error.set(e);
+				start.reset();
+				done.reset();
+			}
+		});
+		remover.start();
+		try {
+			for (int t = 0; t<TRIALS; t++) {
+				m.remove(1);
+				m.put(1, 0, 0);
+				start.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				m.put(1, 1, 1);
+				done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				assertEquals("trial "+t, Integer.valueOf(1), m.get(1, 1));
+			}
+		}
+		catch (BrokenBarrierException|TimeoutException e) {
+			if ( error.get()==null ) throw e;
+		}
+		finally {
+			remover.interrupt(); // no-op unless we failed while it waits
+			remover.join();
+		}
+		if ( error.get()!=null ) throw new AssertionError("remover failed", error.get());
+	}
+
+	@Test public void testComputeIfAbsentCallsFunctionOncePerKey() throws Exception {
+		ConcurrentDoubleKeyMap<Integer, Integer, Integer> m = new ConcurrentDoubleKeyMap<>();
+		AtomicInteger calls = new AtomicInteger();
+		int nthreads = 4;
+		int nkeys = 200;
+		Thread[] threads = new Thread[nthreads];
+		for (int i = 0; i<nthreads; i++) {
+			int id = i;
+			threads[i] = new Thread(() -> {
+				for (int k = 0; k<nkeys; k++) {
+					m.computeIfAbsent(k%10, k, (k1, k2) -> { calls.incrementAndGet(); return k1+k2; });
+					m.remove(k%10, -id-1); // removes of other key2s must not disturb results
+				}
+			});
+		}
+		for (Thread t : threads) t.start();
+		for (Thread t : threads) t.join();
+		assertEquals(nkeys, calls.get());
+		assertEquals(nkeys, m.size());
+		for (int k = 0; k<nkeys; k++) {
+			assertEquals(Integer.valueOf(k%10+k), m.get(k%10, k));
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.ConcurrentMultiMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class TestConcurrentMultiMap {
+	public static final int NTHREADS = 4;
+
+	@Test public void testKeySetInFirstPutOrder() {
+		ConcurrentMultiMap<String, Integer> m = new ConcurrentMultiMap<>(true);
+		m.put("c", 1);
+		m.put("a", 2);
+		m.put("c", 3);
+		m.put("b", 4);
+		m.remove("a");
+		m.put("a", 5);
+		assertEquals(Arrays.asList("c", "b", "a"), new ArrayList<>(m.keySet()));
+		assertEquals(Arrays.asList(1, 3), new ArrayList<>(m.get("c")));
+	}
+
+	/** Writers race puts and removes on shared keys; keySet() must never
+	 *  repeat a key and must keep each thread's own keys in put order.
+	 */
+	@Test public void testParallelWritersPreserveKeyOrder() throws Exception {
+		ConcurrentMultiMap<Integer, Integer> m = new ConcurrentMultiMap<>(true);
+		int nkeys = 5000;
+		Thread[] threads = new Thread[NTHREADS];
+		for (int t = 0; t<NTHREADS; t++) {
+			int id = t;
+			threads[t] = new Thread(() -> {
+				Random r = new Random(id);
+				for (int i = 0; i<nkeys; i++) {
+					m.put(1_000_000 + id*nkeys + i, i); // keys only this thread uses
+					int shared = r.nextInt(50);
+					if ( r.nextBoolean() ) m.put(shared, i);
+					else m.remove(shared);
+				}
+			});
+		}
+		for (Thread t : threads) t.start();
+		for (Thread t : threads) t.join();
+
+		List<Integer> keys = new ArrayList<>(m.keySet());
+		assertEquals(m.size(), keys.size());
+		assertEquals(keys.size(), new HashSet<>(keys).size());
+		for (int t = 0; t<NTHREADS; t++) {
+			int lo = 1_000_000 + t*nkeys;
+			List<Integer> own = new ArrayList<>();
+			for (Integer k : keys) {
+				if ( k>=lo && k<lo+nkeys ) own.add(k);
+			}
+			assertEquals(nkeys, own.size());
+			for (int i = 0; i<nkeys; i++) {
+				assertTrue(own.get(i)==lo+i);
+			}
+		}
+		for (int k = 0; k<50; k++) {
+			m.put(k, -1); // a key that's already there must not show up twice
+		}
+		keys = new ArrayList<>(m.keySet());
+		assertEquals(keys.size(), new HashSet<>(keys).size());
+		assertEquals(NTHREADS*nkeys+50, keys.size());
+	}
+}
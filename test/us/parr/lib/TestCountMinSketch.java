@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.CountMinSketch;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class TestCountMinSketch {
+	public static final double EPSILON = 0.001;
+	public static final double DELTA = 0.01;
+
+	@Test public void testNeverUnderestimatesAndMostlyWithinBound() {
+		Map<Integer, Integer> truth = new HashMap<>();
+		CountMinSketch<Integer> plain = new CountMinSketch<>(EPSILON, DELTA);
+		CountMinSketch<Integer> conservative = new CountMinSketch<>(EPSILON, DELTA, true);
+		Random r = new Random(1);
+		for (int i = 0; i<200_000; i++) {
+			int k = skewed(r);
+			truth.merge(k, 1, Integer::sum);
+			plain.add(k);
+			conservative.add(k);
+		}
+		assertEquals(200_000, plain.total());
+		assertEquals(200_000, conservative.total());
+		int plainOver = 0;
+		for (Map.Entry<Integer, Integer> e : truth.entrySet()) {
+			int c = e.getValue();
+			int p = plain.count(e.getKey());
+			int cu = conservative.count(e.getKey());
+			assertTrue(p>=c);
+			assertTrue(cu>=c);
+			assertTrue(cu<=p); // conservative update only ever tightens
+			if ( p-c>plain.errorBound() ) plainOver++;
+		}
+		assertTrue("over bound for "+plainOver+" of "+truth.size(), plainOver<=2*DELTA*truth.size());
+	}
+
+	@Test public void testMergeMatchesOneSketch() {
+		CountMinSketch<String> all = new CountMinSketch<>(4, 256, false);
+		CountMinSketch<String> a = new CountMinSketch<>(4, 256, false);
+		CountMinSketch<String> b = new CountMinSketch<>(4, 256, false);
+		Random r = new Random(2);
+		for (int i = 0; i<10_000; i++) {
+			String k = "k"+skewed(r);
+			all.add(k);
+			if ( i%2==0 ) a.add(k);
+			else b.add(k);
+		}
+		a.merge(b);
+		assertEquals(all.total(), a.total());
+		for (int i = 0; i<1000; i++) {
+			assertEquals(all.count("k"+i), a.count("k"+i));
+		}
+		a.clear();
+		assertEquals(0, a.total());
+		assertEquals(0, a.count("k0"));
+	}
+
+	@Test public void testNegativeIncrements() {
+		CountMinSketch<String> s = new CountMinSketch<>(3, 64, false);
+		s.add("x", 5);
+		s.add("x", -2);
+		assertTrue(s.count("x")>=3);
+		assertEquals(3, s.total());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConservativeRejectsNegativeIncrement() {
+		new CountMinSketch<String>(3, 64, true).add("x", -1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergeRequiresSameShape() {
+		new CountMinSketch<String>(3, 64, false).merge(new CountMinSketch<String>(3, 128, false));
+	}
+
+	/** Roughly Zipfian keys in 0..9999 */
+	protected static int skewed(Random r) {
+		return (int)Math.floor(Math.pow(10_000, r.nextDouble())) - 1;
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.CountingDenseIntSet;
+import us.parr.lib.collections.CountingHashSet;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class TestCountingDenseIntSet {
+	@Test public void testAddAllFromBiggerSetWithEmptyTail() {
+		CountingDenseIntSet a = new CountingDenseIntSet(5);
+		a.add(1);
+		a.add(5);
+		CountingDenseIntSet b = new CountingDenseIntSet(1000);
+		b.add(1);
+		b.add(3);
+		b.add(3);
+		assertTrue(a.addAll(b));
+		assertEquals(2, a.count(1));
+		assertEquals(2, a.count(3));
+		assertEquals(1, a.count(5));
+		assertEquals(5, a.total());
+		assertEquals(3, a.size());
+		assertEquals(1, (int)a.argmax());
+		assertFalse(a.addAll(b)); // no new keys the second time
+		assertEquals(8, a.total());
+	}
+
+	@Test public void testAddAllRejectsKeyPastEnd() {
+		CountingDenseIntSet a = new CountingDenseIntSet(5);
+		a.add(2);
+		CountingDenseIntSet b = new CountingDenseIntSet(10);
+		b.add(1);
+		b.add(6);
+		try {
+			a.addAll(b);
+			fail("added key 6 to set with max value 5");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		assertEquals(1, a.total());
+		assertEquals(0, a.count(1));
+	}
+
+	@Test public void testAddAllFromHashSet() {
+		CountingDenseIntSet a = new CountingDenseIntSet(5);
+		a.add(4);
+		CountingHashSet<Integer> b = new CountingHashSet<>();
+		b.add(4);
+		b.add(0);
+		assertTrue(a.addAll(b));
+		assertEquals(2, a.count(4));
+		assertEquals(1, a.count(0));
+		assertEquals(3, a.total());
+		assertEquals(2, a.size());
+	}
+}
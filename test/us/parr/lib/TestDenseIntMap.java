@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.DenseIntMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class TestDenseIntMap {
+	@Test public void testGrowthAndSizeAgainstTreeMap() {
+		Random r = new Random(1);
+		DenseIntMap<String> m = new DenseIntMap<>(0);
+		TreeMap<Integer, String> oracle = new TreeMap<>();
+		for (int i = 0; i<50_000; i++) {
+			int k = r.nextInt(100)==0 ? r.nextInt(20_000) : r.nextInt(1+i/10);
+			switch ( r.nextInt(4) ) {
+				case 0 :
+					assertEquals(oracle.remove(k), m.remove(k));
+					break;
+				case 1 :
+					assertEquals(oracle.remove(k), m.put(k, null)); // null value removes
+					break;
+				default :
+					String v = "v"+i;
+					assertEquals(oracle.put(k, v), m.put(k, v));
+			}
+			assertEquals(oracle.size(), m.size());
+			assertEquals(oracle.get(k), m.get(k));
+		}
+		assertEquals(oracle, m);
+		assertEquals(m, oracle);
+		assertEquals(oracle.hashCode(), m.hashCode());
+		assertEquals(new ArrayList<>(oracle.keySet()), new ArrayList<>(m.keySet()));
+		assertEquals(new ArrayList<>(oracle.values()), new ArrayList<>(m.values()));
+		assertEquals(new ArrayList<>(oracle.keySet()), Arrays.asList(m.keyStream().boxed().toArray()));
+		assertNull(m.get(-1));
+		assertNull(m.get(1_000_000));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeKey() {
+		new DenseIntMap<String>().put(-1, "x");
+	}
+
+	@Test public void testViewsWriteThrough() {
+		DenseIntMap<String> m = new DenseIntMap<>(4);
+		for (int k = 0; k<10; k++) {
+			m.put(k, "v"+k);
+		}
+		Iterator<String> values = m.values().iterator();
+		while ( values.hasNext() ) {
+			if ( values.next().equals("v3") ) values.remove();
+		}
+		assertFalse(m.containsKey(3));
+		assertEquals(9, m.size());
+
+		for (Map.Entry<Integer, String> e : m.entrySet()) {
+			if ( e.getKey()%2==0 ) e.setValue("even");
+		}
+		assertEquals("even", m.get(4));
+		assertEquals("v5", m.get(5));
+		assertTrue(m.entrySet().contains(new HashMap.SimpleEntry<>(6, "even")));
+		assertFalse(m.entrySet().contains(new HashMap.SimpleEntry<>(7, "even")));
+
+		assertTrue(m.entrySet().removeIf(e -> e.getKey()>6));
+		assertEquals(6, m.size());
+		assertEquals(6, m.entrySet().size());
+		m.values().clear();
+		assertTrue(m.isEmpty());
+		assertFalse(m.values().iterator().hasNext());
+	}
+
+	@Test public void testPutAllFromDenseIntMap() {
+		DenseIntMap<String> a = new DenseIntMap<>(2);
+		a.put(0, "a0");
+		a.put(2, "a2");
+		DenseIntMap<String> b = new DenseIntMap<>(100);
+		b.put(2, "b2");
+		b.put(3, "b3");
+		b.put(50, "b50"); // past a's buckets, so a grows; b's empty tail must not count
+		Map<Integer, String> expected = new HashMap<>(a);
+		expected.putAll(b);
+		a.putAll((Map<Integer, String>)b);
+		assertEquals(expected, a);
+		assertEquals(4, a.size());
+		a.putAll(new DenseIntMap<String>(1000)); // empty; nothing changes
+		assertEquals(expected, a);
+		assertEquals(4, a.size());
+		a.remove(50);
+		assertEquals(3, a.size());
+		assertNull(a.get(50));
+	}
+}
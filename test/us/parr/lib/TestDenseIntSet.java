@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.DenseIntSet;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/** Check DenseIntSet against a TreeSet, mostly near 64-bit word boundaries */
+public class TestDenseIntSet {
+	public static final int WORD_BITS = 64;
+
+	@Test public void testAddRemoveContainsAcrossWordBoundaries() {
+		Random r = new Random(1);
+		DenseIntSet s = new DenseIntSet(0);
+		TreeSet<Integer> oracle = new TreeSet<>();
+		for (int i = 0; i<100_000; i++) {
+			int x = nearBoundary(r);
+			switch ( r.nextInt(3) ) {
+				case 0 :
+					assertEquals(oracle.remove(x), s.remove(x));
+					break;
+				case 1 :
+					assertEquals(oracle.add(x), s.add(x));
+					break;
+				default :
+					assertEquals(oracle.contains(x), s.contains(x));
+			}
+			assertEquals(oracle.size(), s.size());
+		}
+		assertSame(oracle, s);
+		assertFalse(s.contains(-1));
+		assertFalse(s.remove(-1));
+		assertFalse(s.contains(1_000_000));
+		for (int x : oracle) {
+			assertEquals(oracle.higher(x)!=null ? (int)oracle.higher(x) : -1, s.nextSetBit(x+1));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeKey() {
+		new DenseIntSet(10).add(-1);
+	}
+
+	@Test public void testIteratorRemove() {
+		DenseIntSet s = new DenseIntSet(200);
+		TreeSet<Integer> oracle = new TreeSet<>();
+		for (int x : new int[] {0, 1, 63, 64, 65, 127, 128, 191, 192}) {
+			s.add(x);
+			oracle.add(x);
+		}
+		Iterator<Integer> it = s.iterator();
+		while ( it.hasNext() ) {
+			int x = it.next();
+			if ( x%WORD_BITS==63 || x%WORD_BITS==0 ) {
+				it.remove();
+				oracle.remove(x);
+			}
+		}
+		assertSame(oracle, s);
+	}
+
+	/** Every split must cover a disjoint ascending run, and prefixes come first */
+	@Test public void testSpliteratorSplitsInOrder() {
+		Random r = new Random(2);
+		DenseIntSet s = new DenseIntSet(0);
+		TreeSet<Integer> oracle = new TreeSet<>();
+		for (int i = 0; i<20_000; i++) {
+			int x = r.nextInt(200_000);
+			s.add(x);
+			oracle.add(x);
+		}
+		List<Spliterator.OfInt> parts = new ArrayList<>();
+		split(s.spliterator(), parts);
+		assertTrue(parts.size()>1);
+		List<Integer> all = new ArrayList<>();
+		for (int p = 0; p<parts.size(); p++) {
+			Spliterator.OfInt part = parts.get(p);
+			if ( p%2==0 ) {
+				part.forEachRemaining((int x) -> all.add(x));
+			}
+			else {
+				while ( part.tryAdvance((int x) -> all.add(x)) ) { }
+			}
+		}
+		assertEquals(new ArrayList<>(oracle), all);
+		assertEquals(new ArrayList<>(oracle), s.intStream().parallel().boxed().collect(Collectors.toList()));
+	}
+
+	protected static void split(Spliterator.OfInt s, List<Spliterator.OfInt> parts) {
+		Spliterator.OfInt prefix = s.trySplit();
+		if ( prefix==null ) {
+			parts.add(s);
+			return;
+		}
+		split(prefix, parts);
+		split(s, parts);
+	}
+
+	/** Within 3 bits of a multiple of 64 */
+	protected static int nearBoundary(Random r) {
+		return Math.max(0, r.nextInt(40)*WORD_BITS + r.nextInt(7)-3);
+	}
+
+	protected static void assertSame(TreeSet<Integer> oracle, DenseIntSet s) {
+		assertEquals(oracle.size(), s.size());
+		assertEquals(new ArrayList<>(oracle), new ArrayList<>(s));
+		List<Integer> each = new ArrayList<>();
+		s.forEachInt(each::add);
+		assertEquals(new ArrayList<>(oracle), each);
+		int[] a = s.toIntArray();
+		assertEquals(oracle.size(), a.length);
+		int i = 0;
+		for (int x : oracle) {
+			assertEquals(x, a[i++]);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.DoubleKeyMap;
+import us.parr.lib.collections.FlatDoubleKeyMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+/** Check FlatDoubleKeyMap against the nested-map DoubleKeyMap, with and
+ *  without the key1 index, through growth and heavy removal.
+ */
+public class TestFlatDoubleKeyMap {
+	/** Counts deletions whose backward shift wrapped past the table end */
+	static class WrapCountingMap extends FlatDoubleKeyMap<Integer, Integer, Integer> {
+		int wraps;
+
+		WrapCountingMap(boolean indexKey1) {
+			super(1, indexKey1);
+		}
+
+		@Override
+		protected void move(int from, int to) {
+			if ( from<to ) wraps++;
+			super.move(from, to);
+		}
+	}
+
+	@Test public void testAgainstDoubleKeyMapWithoutIndex() {
+		checkAgainstDoubleKeyMap(false, 1);
+	}
+
+	@Test public void testAgainstDoubleKeyMapWithIndex() {
+		checkAgainstDoubleKeyMap(true, 2);
+	}
+
+	@Test public void testIndexedKeySetsAreReadOnly() {
+		FlatDoubleKeyMap<String, String, Integer> m = new FlatDoubleKeyMap<>(4, true);
+		m.put("a", "x", 1);
+		try {
+			m.keySet().clear();
+			fail("keySet() must be read-only");
+		}
+		catch (UnsupportedOperationException expected) {
+		}
+		try {
+			m.keySet("a").add("y");
+			fail("keySet(k1) must be read-only");
+		}
+		catch (UnsupportedOperationException expected) {
+		}
+		assertEquals(Integer.valueOf(1), m.get("a", "x"));
+		assertNull(m.get("a", "y"));
+	}
+
+	protected static void checkAgainstDoubleKeyMap(boolean indexKey1, long seed) {
+		Random r = new Random(seed);
+		// grow past many rehashes
+		WrapCountingMap m = new WrapCountingMap(indexKey1);
+		DoubleKeyMap<Integer, Integer, Integer> oracle = new DoubleKeyMap<>();
+		for (int i = 0; i<50_000; i++) {
+			randomOp(m, oracle, r, 2+i/500, 20, 3);
+			if ( i%5000==0 ) assertSame(oracle, m, indexKey1);
+		}
+		assertSame(oracle, m, indexKey1);
+		removeAll(m, oracle);
+
+		// churn a few entries in a small table so some backward shifts wrap
+		m = new WrapCountingMap(indexKey1);
+		oracle = new DoubleKeyMap<>();
+		for (int i = 0; i<50_000; i++) {
+			randomOp(m, oracle, r, 8, 8, 2);
+			if ( i%5000==0 ) assertSame(oracle, m, indexKey1);
+		}
+		assertSame(oracle, m, indexKey1);
+		assertTrue("no backward shift wrapped around", m.wraps>0);
+		removeAll(m, oracle);
+	}
+
+	/** Put or remove (one time in removeOdds) a random entry from about n1
+	 *  key1s, including null, by n2 key2s, and compare the results.
+	 */
+	protected static void randomOp(FlatDoubleKeyMap<Integer, Integer, Integer> m, DoubleKeyMap<Integer, Integer, Integer> oracle, Random r, int n1, int n2, int removeOdds) {
+		Integer k1 = r.nextInt(n1+1)==0 ? null : r.nextInt(n1);
+		Integer k2 = r.nextInt(20)==0 ? null : r.nextInt(n2);
+		int size = m.size();
+		if ( r.nextInt(removeOdds)==0 ) {
+			Integer prev = remove(oracle, k1, k2);
+			assertEquals(prev, m.remove(k1, k2));
+			assertEquals(prev!=null ? size-1 : size, m.size());
+		}
+		else {
+			Integer v = r.nextInt(1000);
+			Integer prev = oracle.put(k1, k2, v);
+			assertEquals(prev, m.put(k1, k2, v));
+			assertEquals(prev==null ? size+1 : size, m.size());
+		}
+		assertEquals(oracle.get(k1, k2), m.get(k1, k2));
+	}
+
+	protected static void removeAll(FlatDoubleKeyMap<Integer, Integer, Integer> m, DoubleKeyMap<Integer, Integer, Integer> oracle) {
+		for (Integer k1 : new ArrayList<>(oracle.keySet())) {
+			for (Integer k2 : new ArrayList<>(oracle.keySet(k1))) {
+				assertEquals(remove(oracle, k1, k2), m.remove(k1, k2));
+			}
+		}
+		assertTrue(m.isEmpty());
+		assertTrue(m.keySet().isEmpty());
+	}
+
+	/** DoubleKeyMap has no remove so drop k2 from k1's inner map, then k1 if that empties it */
+	protected static Integer remove(DoubleKeyMap<Integer, Integer, Integer> oracle, Integer k1, Integer k2) {
+		Map<Integer, Integer> inner = oracle.get(k1);
+		if ( inner==null ) return null;
+		Integer prev = inner.remove(k2);
+		if ( inner.isEmpty() ) oracle.keySet().remove(k1);
+		return prev;
+	}
+
+	protected static void assertSame(DoubleKeyMap<Integer, Integer, Integer> oracle, FlatDoubleKeyMap<Integer, Integer, Integer> m, boolean ordered) {
+		assertEquals(oracle.keySet(), m.keySet());
+		for (Integer k1 : oracle.keySet()) {
+			assertEquals(oracle.get(k1), m.get(k1));
+			if ( ordered ) { // index keeps key2s and values in insertion order like the oracle
+				assertEquals(new ArrayList<>(oracle.keySet(k1)), new ArrayList<>(m.keySet(k1)));
+				assertEquals(new ArrayList<>(oracle.values(k1)), new ArrayList<>(m.values(k1)));
+			}
+			else {
+				assertEquals(oracle.keySet(k1), m.keySet(k1));
+				assertEquals(sorted(oracle.values(k1)), sorted(m.values(k1)));
+			}
+		}
+		assertNull(m.keySet(-1));
+		assertNull(m.values(-1));
+		assertNull(m.get(-1));
+	}
+
+	protected static List<Integer> sorted(Collection<Integer> values) {
+		List<Integer> a = new ArrayList<>(values);
+		Collections.sort(a);
+		return a;
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.FrozenMultiMap;
+import us.parr.lib.collections.MultiMap;
+import us.parr.lib.collections.MultiMapOfLists;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class TestFrozenMultiMap {
+	@Test public void testMatchesSourceMap() {
+		Random r = new Random(1);
+		MultiMapOfLists<Integer, Integer> m = new MultiMapOfLists<>();
+		for (int k = 0; k<500; k++) {
+			int n = r.nextInt(6);
+			if ( n==0 ) m.set(k, new ArrayList<>()); // key with no values
+			for (int i = 0; i<n; i++) {
+				m.put(k, r.nextInt(100));
+			}
+		}
+		m.put(null, -1);
+		FrozenMultiMap<Integer, Integer> f = m.freeze();
+		assertSame(m, f);
+		assertNull(f.get(500));
+		assertFalse(f.containsKey(-1));
+		assertEquals(-1, f.ordinal(500));
+	}
+
+	/** Each key's slice is exactly values[offsets[i]..offsets[i+1]), so the
+	 *  slices laid end to end must be the whole values array in key order.
+	 */
+	@Test public void testSlicesTileValuesArray() {
+		MultiMapOfLists<String, String> m = new MultiMapOfLists<>();
+		m.put("a", "a1");
+		m.put("a", "a2");
+		m.set("empty", new ArrayList<>());
+		m.put("b", "b1");
+		m.set("empty2", new ArrayList<>());
+		m.put("c", "c1");
+		m.put("c", "c2");
+		m.put("c", "c3");
+		FrozenMultiMap<String, String> f = m.freeze();
+		assertEquals(6, f.valueCount());
+		List<String> tiled = new ArrayList<>();
+		for (int i = 0; i<f.size(); i++) {
+			tiled.addAll(f.values(i));
+		}
+		assertEquals(f.valueStream().collect(Collectors.toList()), tiled);
+		assertEquals(list("a1", "a2", "b1", "c1", "c2", "c3"), tiled);
+		assertEquals(Collections.emptyList(), f.get("empty"));
+		assertEquals(Collections.emptyList(), f.get("empty2"));
+		assertEquals(list("b1"), f.get("b"));
+		assertEquals(list("c1", "c2", "c3"), f.values(f.size()-1));
+		assertOutOfBounds(f.get("empty"), 0);  // would be b1 if the slice leaked
+		assertOutOfBounds(f.get("a"), 2);      // first value of the next key
+		assertOutOfBounds(f.get("b"), -1);     // last value of the previous key
+		assertOutOfBounds(f.get("c"), 3);      // past the end of values
+		assertEquals("{a=[a1, a2], empty=[], b=[b1], empty2=[], c=[c1, c2, c3]}", f.toString());
+	}
+
+	/** "Aa" and "BB" share a hashCode so they land in the same probe run */
+	@Test public void testCollidingAndNullKeys() {
+		MultiMapOfLists<String, Integer> m = new MultiMapOfLists<>();
+		m.put("Aa", 1);
+		m.put("BB", 2);
+		m.put("BB", 3);
+		m.put(null, 4);
+		FrozenMultiMap<String, Integer> f = new FrozenMultiMap<>(m);
+		assertSame(m, f);
+		assertEquals(0, f.ordinal("Aa"));
+		assertEquals(1, f.ordinal("BB"));
+		assertEquals(2, f.ordinal(null));
+		assertNull(f.get("C#")); // also hashes like "Aa" but isn't there
+	}
+
+	@Test public void testEmptyMap() {
+		FrozenMultiMap<String, String> f = new MultiMapOfLists<String, String>().freeze();
+		assertEquals(0, f.size());
+		assertEquals(0, f.valueCount());
+		assertNull(f.get("a"));
+		assertEquals("{}", f.toString());
+		assertEquals(0, f.stream().count());
+	}
+
+	@Test public void testImmutable() {
+		MultiMapOfLists<String, String> m = new MultiMapOfLists<>();
+		m.put("a", "x");
+		FrozenMultiMap<String, String> f = m.freeze();
+		assertTrue(f==f.freeze());
+		try {
+			f.put("a", "y");
+			fail("put into frozen map");
+		}
+		catch (UnsupportedOperationException expected) {
+		}
+		try {
+			f.get("a").set(0, "y");
+			fail("wrote through a slice");
+		}
+		catch (UnsupportedOperationException expected) {
+		}
+		m.put("a", "y"); // frozen copy doesn't see later changes
+		assertEquals(list("x"), f.get("a"));
+	}
+
+	protected static <K, V> void assertSame(MultiMap<K, V> m, FrozenMultiMap<K, V> f) {
+		assertEquals(m.size(), f.size());
+		int nvalues = 0;
+		int i = 0;
+		for (Map.Entry<K, Collection<V>> e : m.entrySet()) {
+			K k = e.getKey();
+			assertEquals(k, f.key(i));
+			assertEquals(i, f.ordinal(k));
+			assertTrue(f.containsKey(k));
+			assertEquals(e.getValue(), f.get(k));
+			assertEquals(e.getValue(), f.values(i));
+			nvalues += e.getValue().size();
+			i++;
+		}
+		assertEquals(nvalues, f.valueCount());
+		assertEquals(new ArrayList<>(m.keySet()), new ArrayList<>(f.keySet()));
+		assertEquals(new ArrayList<>(m.keySet()), f.stream().parallel().map(Map.Entry::getKey).collect(Collectors.toList()));
+		List<V> all = new ArrayList<>();
+		for (Collection<V> vs : m.values()) {
+			all.addAll(vs);
+		}
+		assertEquals(all, f.valueStream().parallel().collect(Collectors.toList()));
+	}
+
+	protected static void assertOutOfBounds(List<?> slice, int i) {
+		try {
+			slice.get(i);
+			fail("read "+i+" of slice size "+slice.size());
+		}
+		catch (IndexOutOfBoundsException expected) {
+		}
+	}
+
+	@SafeVarargs
+	protected static <T> List<T> list(T... elements) {
+		return new ArrayList<>(Arrays.asList(elements));
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.util.HyperLogLog;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+public class TestHyperLogLog {
+	/** About 4 standard errors at the default precision */
+	public static final double MAX_ERROR = 0.03;
+
+	@Test public void testSmallCountsAreNearlyExact() {
+		for (int n : new int[] {1, 10, 100, 1000}) {
+			HyperLogLog h = new HyperLogLog();
+			addRange(h, 0, n);
+			assertTrue(h.isSparse());
+			assertRelativeError(n, h.cardinality(), 0.01);
+		}
+	}
+
+	@Test public void testErrorAcrossMagnitudes() {
+		for (int n : new int[] {10_000, 100_000, 1_000_000}) {
+			HyperLogLog h = new HyperLogLog();
+			addRange(h, 0, n);
+			assertRelativeError(n, h.cardinality(), MAX_ERROR);
+		}
+	}
+
+	@Test public void testDuplicatesDontCount() {
+		HyperLogLog h = new HyperLogLog();
+		for (int i = 0; i<10; i++) {
+			addRange(h, 0, 50_000);
+		}
+		assertRelativeError(50_000, h.cardinality(), MAX_ERROR);
+	}
+
+	@Test public void testSparseToDenseSwitch() {
+		HyperLogLog h = new HyperLogLog();
+		addRange(h, 0, 1000);
+		assertTrue(h.isSparse());
+		addRange(h, 1000, 100_000);
+		assertFalse(h.isSparse());
+		assertRelativeError(100_000, h.cardinality(), MAX_ERROR);
+	}
+
+	@Test public void testMergeSparseIntoDense() {
+		HyperLogLog dense = new HyperLogLog();
+		addRange(dense, 0, 200_000);
+		HyperLogLog sparse = new HyperLogLog();
+		addRange(sparse, 1_000_000, 1_003_000);
+		assertTrue(sparse.isSparse());
+		dense.merge(sparse);
+		assertFalse(dense.isSparse());
+		assertRelativeError(203_000, dense.cardinality(), MAX_ERROR);
+	}
+
+	@Test public void testMergeDenseIntoSparse() {
+		HyperLogLog sparse = new HyperLogLog();
+		addRange(sparse, 0, 100);
+		HyperLogLog dense = new HyperLogLog();
+		addRange(dense, 100, 200_000);
+		sparse.merge(dense);
+		assertFalse(sparse.isSparse());
+		assertRelativeError(200_000, sparse.cardinality(), MAX_ERROR);
+	}
+
+	@Test public void testMergeSparseIntoSparse() {
+		HyperLogLog a = new HyperLogLog();
+		HyperLogLog b = new HyperLogLog();
+		addRange(a, 0, 600);
+		addRange(b, 400, 1000); // overlaps a
+		a.merge(b);
+		assertRelativeError(1000, a.cardinality(), 0.01);
+	}
+
+	@Test public void testBytesRoundTripSparse() {
+		HyperLogLog h = new HyperLogLog();
+		addRange(h, 0, 500);
+		HyperLogLog r = HyperLogLog.fromBytes(h.toBytes());
+		assertTrue(r.isSparse());
+		assertEquals(h.cardinality(), r.cardinality());
+		addRange(h, 500, 50_000); // both must keep working the same afterwards
+		addRange(r, 500, 50_000);
+		assertEquals(h.cardinality(), r.cardinality());
+	}
+
+	@Test public void testBytesRoundTripDense() {
+		HyperLogLog h = new HyperLogLog(12);
+		addRange(h, 0, 100_000);
+		assertFalse(h.isSparse());
+		HyperLogLog r = HyperLogLog.fromBytes(h.toBytes());
+		assertFalse(r.isSparse());
+		assertEquals(12, r.getPrecision());
+		assertEquals(h.cardinality(), r.cardinality());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergeRequiresSamePrecision() {
+		new HyperLogLog(10).merge(new HyperLogLog(12));
+	}
+
+	protected static void addRange(HyperLogLog h, int from, int to) {
+		for (int i = from; i<to; i++) {
+			h.add(i);
+		}
+	}
+
+	protected static void assertRelativeError(long expected, long estimate, double maxError) {
+		double error = Math.abs(estimate-expected) / (double)expected;
+		assertTrue("estimate "+estimate+" for "+expected+" off by "+error, error<=maxError);
+	}
+}
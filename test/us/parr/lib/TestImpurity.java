@@ -7,15 +7,20 @@
 package us.parr.lib;
 
 import org.junit.Test;
+import us.parr.lib.collections.ContingencyTable;
 import us.parr.lib.collections.CountingHashSet;
+import us.parr.lib.collections.MultiMapOfCountingSets;
+import us.parr.lib.collections.SplitCounts;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
 import static us.parr.lib.ParrtMath.isClose;
 import static us.parr.lib.ParrtMath.log2;
+import static us.parr.lib.ParrtStats.clogc;
 import static us.parr.lib.ParrtStats.entropy;
 import static us.parr.lib.ParrtStats.gini;
 
@@ -98,4 +103,86 @@ public class TestImpurity {
 		double expected = .99*(1-.99)+.01*(1-.01);
 		assertTrue(isClose(expected, gini(valueCounts)));
 	}
+
+	@Test public void testSplitCountsMatchesFullRecount() {
+		int[] signups = new int[] {1, 3, 2, 2, 3, 1, 2, 3, 1, 1, 1, 1, 2, 1, 2, 2};
+		SplitCounts split = new SplitCounts(3);
+		for (int signup : signups) {
+			split.addRight(signup);
+		}
+		for (int i = 0; i<signups.length; i++) {
+			split.moveLeft(signups[i]);
+			List<Integer> left = new ArrayList<>();
+			List<Integer> right = new ArrayList<>();
+			for (int cat = 0; cat<=3; cat++) {
+				left.add(split.leftCount(cat));
+				right.add(split.rightCount(cat));
+			}
+			assertTrue(isClose(gini(left), split.leftGini()));
+			assertTrue(isClose(entropy(left), split.leftEntropy()));
+			if ( split.rightTotal()>0 ) {
+				assertTrue(isClose(gini(right), split.rightGini()));
+				assertTrue(isClose(entropy(right), split.rightEntropy()));
+			}
+		}
+		assertEquals(0, split.rightTotal());
+	}
+
+	@Test public void testContingencyTableInformationGain() {
+		int[] signups = new int[] {1, 3, 2, 2, 3, 1, 2, 3, 1, 1, 1, 1, 2, 1, 2, 2};
+		int[] willwait = new int[] {1, 0, 1, 1, 0, 1, 0, 1, 0, 0, 0, 1, 1, 0, 1, 1};
+		ContingencyTable table = new ContingencyTable(3, 1);
+		MultiMapOfCountingSets<Integer,Integer> labelsByValue = new MultiMapOfCountingSets<>();
+		CountingHashSet<Integer> labels = new CountingHashSet<>();
+		for (int i = 0; i<signups.length; i++) {
+			table.add(signups[i], willwait[i]);
+			labelsByValue.put(signups[i], willwait[i]);
+			labels.add(willwait[i]);
+		}
+		double expected = entropy(labels.counts());
+		double expectedGini = gini(labels.counts());
+		for (int v : labelsByValue.keySet()) {
+			double w = labelsByValue.get(v).total() / (double)signups.length;
+			expected -= w * entropy(labelsByValue.get(v).counts());
+			expectedGini -= w * gini(labelsByValue.get(v).counts());
+			assertTrue(isClose(entropy(labelsByValue.get(v).counts()), table.rowEntropy(v)));
+		}
+		assertTrue(isClose(expected, table.informationGain()));
+		assertTrue(isClose(expectedGini, table.giniGain()));
+	}
+
+	@Test public void testGiniAndEntropyFromSums() {
+		int[] counts = new int[] {5, 0, 3, 8};
+		long sq = 0;
+		double clogc = 0.0;
+		for (int c : counts) {
+			sq += (long)c*c;
+			clogc += clogc(c);
+		}
+		List<Integer> asList = new ArrayList<>();
+		for (int c : counts) asList.add(c);
+		assertTrue(isClose(gini(asList), gini(16, sq)));
+		assertTrue(isClose(entropy(counts), entropy(16, clogc)));
+		assertEquals(0.0, gini(0, 0L));
+		assertEquals(0.0, entropy(0, 0.0));
+	}
+
+	@Test public void testContingencyTableRejectsOutOfRangeCell() {
+		ContingencyTable table = new ContingencyTable(2, 1);
+		table.add(1, 1, 4);
+		for (int[] cell : new int[][] {{3, 0}, {-1, 0}, {0, 2}, {0, -1}, {1, 2}}) {
+			try {
+				table.add(cell[0], cell[1], 7);
+				fail("added to ("+cell[0]+", "+cell[1]+")");
+			}
+			catch (IndexOutOfBoundsException expected) {
+			}
+		}
+		assertEquals(4, table.total());
+		assertEquals(4, table.rowTotal(1));
+		assertEquals(4, table.colTotal(1));
+		assertEquals(0, table.rowTotal(2));
+		assertEquals(0, table.colTotal(0));
+		assertEquals(4, table.count(1, 1));
+	}
 }
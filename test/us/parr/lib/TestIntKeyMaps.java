@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.AbstractIntKeyMap;
+import us.parr.lib.collections.IntDoubleMap;
+import us.parr.lib.collections.IntIntMap;
+import us.parr.lib.collections.IntLongMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/** Check IntIntMap, IntLongMap and IntDoubleMap against a HashMap, starting
+ *  small so the tables resize many times, with key 0 and removals mixed in.
+ */
+public class TestIntKeyMaps {
+	public static final int NO_VALUE = -1;
+
+	/** The operations the three maps share, widened to long */
+	interface Ops {
+		AbstractIntKeyMap map();
+		long get(int key);
+		long put(int key, long value);
+		long addTo(int key, long delta);
+		long computeIfAbsent(int key, long value);
+		Map<Integer, Long> entries(); // via forEach()
+		Ops copy();
+	}
+
+	@Test public void testIntIntMapAgainstHashMap() {
+		checkAgainstHashMap(ints(new IntIntMap(1, NO_VALUE)), 1);
+	}
+
+	@Test public void testIntLongMapAgainstHashMap() {
+		checkAgainstHashMap(longs(new IntLongMap(1, NO_VALUE)), 2);
+	}
+
+	@Test public void testIntDoubleMapAgainstHashMap() {
+		checkAgainstHashMap(doubles(new IntDoubleMap(1, NO_VALUE)), 3);
+	}
+
+	@Test public void testZeroKeyAndCopyAreIndependent() {
+		IntLongMap m = new IntLongMap(1, NO_VALUE);
+		assertEquals(NO_VALUE, m.get(0));
+		assertFalse(m.containsKey(0));
+		assertEquals(5, m.addTo(0, 5));
+		m.put(7, 70);
+		IntLongMap c = new IntLongMap(m);
+		assertTrue(m.remove(0));
+		assertFalse(m.containsKey(0));
+		assertEquals(5, c.get(0));
+		c.put(7, 71);
+		assertEquals(70, m.get(7));
+		for (int k = 1; k<100; k++) {
+			c.put(k, k); // grow the copy past the original's table
+		}
+		assertEquals(5, c.get(0));
+		assertEquals(100, c.size());
+		assertEquals(1, m.size());
+	}
+
+	protected static void checkAgainstHashMap(Ops m, long seed) {
+		Random r = new Random(seed);
+		Map<Integer, Long> oracle = new HashMap<>();
+		for (int i = 0; i<200_000; i++) {
+			// grow for the first half then mostly shrink so removals shift long runs
+			int range = i<100_000 ? 1+i/20 : 5000;
+			int k = r.nextInt(50)==0 ? r.nextInt() : r.nextInt(range)-range/4;
+			long v = r.nextInt(1000);
+			int op = r.nextInt(i<100_000 ? 6 : 4);
+			switch ( op ) {
+				case 0 :
+					assertEquals(orNone(oracle.get(k)), m.get(k));
+					break;
+				case 1 :
+				case 2 :
+					assertEquals(oracle.remove(k)!=null, m.map().remove(k));
+					break;
+				case 3 :
+					assertEquals(orNone(oracle.put(k, v)), m.put(k, v));
+					break;
+				case 4 :
+					assertEquals((long)oracle.merge(k, v, Long::sum), m.addTo(k, v));
+					break;
+				default :
+					assertEquals((long)oracle.computeIfAbsent(k, x -> v), m.computeIfAbsent(k, v));
+			}
+			assertEquals(oracle.size(), m.map().size());
+			assertEquals(oracle.containsKey(0), m.map().containsKey(0));
+			if ( i%20_000==0 ) {
+				assertSame(oracle, m);
+				assertSame(oracle, m.copy());
+			}
+		}
+		assertSame(oracle, m);
+		m.map().clear();
+		oracle.clear();
+		assertSame(oracle, m);
+	}
+
+	protected static long orNone(Long v) {
+		return v!=null ? v : NO_VALUE;
+	}
+
+	protected static void assertSame(Map<Integer, Long> oracle, Ops m) {
+		assertEquals(oracle.size(), m.map().size());
+		assertEquals(new TreeMap<>(oracle), new TreeMap<>(m.entries()));
+		assertEquals(oracle.keySet(), m.map().keys().boxed().collect(Collectors.toSet()));
+		assertEquals(oracle.size(), m.map().keyArray().length);
+		for (Map.Entry<Integer, Long> e : oracle.entrySet()) {
+			assertEquals((long)e.getValue(), m.get(e.getKey()));
+		}
+	}
+
+	protected static Ops ints(IntIntMap m) {
+		return new Ops() {
+			public AbstractIntKeyMap map() { return m; }
+			public long get(int key) { return m.get(key); }
+			public long put(int key, long value) { return m.put(key, (int)value); }
+			public long addTo(int key, long delta) { return m.addTo(key, (int)delta); }
+			public long computeIfAbsent(int key, long value) { return m.computeIfAbsent(key, x -> (int)value); }
+			public Map<Integer, Long> entries() {
+				Map<Integer, Long> a = new HashMap<>();
+				m.forEach((k, v) -> assertEquals(null, a.put(k, (long)v)));
+				return a;
+			}
+			public Ops copy() { return ints(new IntIntMap(m)); }
+		};
+	}
+
+	protected static Ops longs(IntLongMap m) {
+		return new Ops() {
+			public AbstractIntKeyMap map() { return m; }
+			public long get(int key) { return m.get(key); }
+			public long put(int key, long value) { return m.put(key, value); }
+			public long addTo(int key, long delta) { return m.addTo(key, delta); }
+			public long computeIfAbsent(int key, long value) { return m.computeIfAbsent(key, x -> value); }
+			public Map<Integer, Long> entries() {
+				Map<Integer, Long> a = new HashMap<>();
+				m.forEach((k, v) -> assertEquals(null, a.put(k, v)));
+				return a;
+			}
+			public Ops copy() { return longs(new IntLongMap(m)); }
+		};
+	}
+
+	/** Values stay small whole numbers so doubles compare exactly */
+	protected static Ops doubles(IntDoubleMap m) {
+		return new Ops() {
+			public AbstractIntKeyMap map() { return m; }
+			public long get(int key) { return (long)m.get(key); }
+			public long put(int key, long value) { return (long)m.put(key, value); }
+			public long addTo(int key, long delta) { return (long)m.addTo(key, delta); }
+			public long computeIfAbsent(int key, long value) { return (long)m.computeIfAbsent(key, x -> value); }
+			public Map<Integer, Long> entries() {
+				Map<Integer, Long> a = new HashMap<>();
+				m.forEach((k, v) -> assertEquals(null, a.put(k, (long)v)));
+				return a;
+			}
+			public Ops copy() { return doubles(new IntDoubleMap(m)); }
+		};
+	}
+}
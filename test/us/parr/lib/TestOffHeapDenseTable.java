@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.OffHeapCountingDenseIntSet;
+import us.parr.lib.collections.OffHeapDenseIntMap;
+import us.parr.lib.collections.OffHeapDenseTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+
+public class TestOffHeapDenseTable {
+	@Test public void testCountingSetRoundTripAndFileFormat() throws Exception {
+		Path file = tempFile();
+		try {
+			try (OffHeapCountingDenseIntSet s = OffHeapCountingDenseIntSet.create(file, 1000)) {
+				s.add(0);
+				s.add(7, 5);
+				s.add(1000, 2);
+				s.set(7, 3);
+			}
+			ByteBuffer h = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+			assertEquals(64+1001*4, h.capacity());
+			assertEquals(OffHeapDenseTable.MAGIC, h.getInt(0));
+			assertEquals(OffHeapDenseTable.VERSION, h.getInt(4));
+			assertEquals(4, h.getInt(8));   // slot bytes
+			assertEquals(1, h.getInt(12));  // clean
+			assertEquals(1001L, h.getLong(16)); // slots
+			assertEquals(3L, h.getLong(24));    // nonzero slots
+			assertEquals(6L, h.getLong(32));    // total
+			assertEquals(3, h.getInt(64+7*4));
+
+			try (OffHeapCountingDenseIntSet s = OffHeapCountingDenseIntSet.open(file, true)) {
+				assertEquals(1001, s.length());
+				assertEquals(3, s.size());
+				assertEquals(6, s.total());
+				assertEquals(1, s.count(0));
+				assertEquals(3, s.count(7));
+				assertEquals(2, s.count(1000));
+				assertEquals(7, s.argmax());
+				try {
+					s.add(1);
+					fail("added to read-only table");
+				}
+				catch (UnsupportedOperationException expected) {
+				}
+			}
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/** A writer that never closes leaves the file unclean, so the next open recounts */
+	@Test public void testUncleanOpenRecounts() throws Exception {
+		Path file = tempFile();
+		try {
+			OffHeapDenseIntMap writer = OffHeapDenseIntMap.create(file, 100);
+			writer.put(1, 10);
+			writer.flush(); // header says n=1, but the file stays unclean
+			writer.put(2, 20);
+			writer.put(3, -30);
+			try (OffHeapDenseIntMap m = OffHeapDenseIntMap.open(file, false)) {
+				assertEquals(3, m.size()); // not the stale 1 from the header
+				assertEquals(20, m.get(2));
+				assertEquals(-30, m.get(3));
+				m.remove(1);
+			}
+			try (OffHeapDenseIntMap m = OffHeapDenseIntMap.open(file, true)) {
+				assertEquals(2, m.size()); // clean now, so stats come from the header
+				assertEquals(0, m.get(1));
+			}
+			writer.close();
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test public void testOpenRejectsWrongFilesAndLeavesThem() throws Exception {
+		Path file = tempFile();
+		try {
+			Files.write(file, new byte[10]);
+			assertOpenFails(file);
+			Files.write(file, new byte[64]);
+			assertOpenFails(file);
+			Path mapFile = tempFile();
+			try {
+				try (OffHeapDenseIntMap m = OffHeapDenseIntMap.create(mapFile, 3)) {
+					m.put(1, 1);
+				}
+				assertOpenFails(mapFile); // 8-byte slots aren't a counting set
+				byte[] bytes = Files.readAllBytes(mapFile);
+				Files.write(mapFile, Arrays.copyOf(bytes, bytes.length-1));
+				try {
+					OffHeapDenseIntMap.open(mapFile, true);
+					fail("opened truncated file");
+				}
+				catch (IOException expected) {
+				}
+				assertTrue(Files.exists(mapFile));
+			}
+			finally {
+				Files.deleteIfExists(mapFile);
+			}
+			try {
+				OffHeapCountingDenseIntSet.create(file, 10);
+				fail("created over existing file");
+			}
+			catch (FileAlreadyExistsException expected) {
+			}
+			assertTrue(Files.exists(file));
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test public void testFailedCreateDeletesFile() throws Exception {
+		Path file = tempFile();
+		try {
+			OffHeapCountingDenseIntSet.create(file, (1L << 59)-1); // 2^61 bytes of slots
+			fail("created impossibly large table");
+		}
+		catch (IOException|RuntimeException expected) {
+		}
+		finally {
+			assertFalse(Files.deleteIfExists(file));
+		}
+	}
+
+	/** A fresh path in the temp dir with no file there yet */
+	protected static Path tempFile() throws IOException {
+		Path file = Files.createTempFile("dense", ".tbl");
+		Files.delete(file);
+		return file;
+	}
+
+	protected static void assertOpenFails(Path file) {
+		try {
+			OffHeapCountingDenseIntSet.open(file, false);
+			fail("opened "+file);
+		}
+		catch (IOException expected) {
+		}
+		assertTrue(Files.exists(file));
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017 Terence Parr. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE file in the project root.
+ */
+
+package us.parr.lib;
+
+import org.junit.Test;
+import us.parr.lib.collections.SpaceSavingSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class TestSpaceSavingSet {
+	/** Check consistency through the public API after each add. counts()
+	 *  walks the bucket list down from max, while count() follows each
+	 *  counter's own bucket pointer, so a bad relink shows up as a mismatch.
+	 */
+	static class CheckedSet<T> extends SpaceSavingSet<T> {
+		CheckedSet(int capacity) {
+			super(capacity);
+		}
+
+		@Override
+		public boolean add(T key, int n) {
+			boolean isNew = super.add(key, n);
+			List<Integer> counts = counts();
+			List<Integer> perKey = new ArrayList<>();
+			long sum = 0;
+			for (T k : keySet()) {
+				perKey.add(count(k));
+				sum += count(k);
+			}
+			perKey.sort(Collections.reverseOrder());
+			assertEquals(perKey, counts);
+			assertEquals(total(), sum); // space-saving keeps sum of counts == total
+			assertEquals(counts.get(0), (Integer)count(argmax()));
+			assertEquals(Math.min(3, size()), topK(3).size());
+			return isNew;
+		}
+	}
+
+	@Test public void testAddWithLargeIncrementsRelinksBuckets() {
+		CheckedSet<String> s = new CheckedSet<>(10);
+		s.add("a");          // buckets 1
+		s.add("b", 5);       // 1, 5
+		s.add("c", 3);       // 1, 3, 5: new bucket between existing ones
+		s.add("a", 2);       // a moves 1->3; bucket 1 goes away
+		s.add("c", 2);       // c moves 3->5 joining b; a alone at 3
+		s.add("a", 10);      // a jumps past every bucket to become max
+		s.add("b", 8);       // b lands on a's bucket, leaving c alone at 5
+		assertEquals(13, s.count("a"));
+		assertEquals(13, s.count("b"));
+		assertEquals(5, s.count("c"));
+		assertEquals(Arrays.asList(13, 13, 5), s.counts());
+		assertEquals(new HashSet<>(Arrays.asList("a", "b")), new HashSet<>(s.topK(2)));
+		assertEquals(31, s.total());
+		assertTrue(s.isGuaranteedTopK("a", 1)); // b ties but doesn't beat a
+		assertFalse(s.isGuaranteedTopK("c", 2));
+		assertTrue(s.isGuaranteedTopK("c", 3));
+	}
+
+	@Test public void testEvictionBoundsAndHeavyHitters() {
+		int capacity = 50;
+		CheckedSet<Integer> s = new CheckedSet<>(capacity);
+		Map<Integer, Integer> truth = new HashMap<>();
+		Random r = new Random(1);
+		for (int i = 0; i<50_000; i++) {
+			int k = (int)Math.floor(Math.pow(5000, r.nextDouble())); // skewed
+			int n = 1+r.nextInt(3);
+			truth.merge(k, n, Integer::sum);
+			s.add(k, n);
+		}
+		assertEquals(capacity, s.size());
+		for (Integer k : s.keySet()) {
+			int t = truth.get(k);
+			assertTrue(s.count(k)>=t);
+			assertTrue(s.count(k)-s.error(k)<=t);
+		}
+		for (Map.Entry<Integer, Integer> e : truth.entrySet()) {
+			if ( e.getValue()>s.total()/capacity ) assertTrue(s.contains(e.getKey()));
+		}
+		List<Integer> counts = s.counts();
+		for (int i = 1; i<counts.size(); i++) {
+			assertTrue(counts.get(i-1)>=counts.get(i));
+		}
+		assertEquals(counts.get(0), (Integer)s.count(s.argmax()));
+	}
+
+	@Test public void testEvictedKeyInheritsMinCountAsError() {
+		CheckedSet<String> s = new CheckedSet<>(2);
+		assertTrue(s.add("a", 4));
+		assertTrue(s.add("b", 2));
+		assertFalse(s.add("a"));
+		assertTrue(s.add("c", 3)); // evicts b at 2
+		assertFalse(s.contains("b"));
+		assertEquals(5, s.count("c"));
+		assertEquals(2, s.error("c"));
+		assertEquals(0, s.count("b"));
+		assertEquals(new ArrayList<>(Arrays.asList("c", "a")), s.topK(5));
+		s.clear();
+		assertTrue(s.isEmpty());
+		assertNull(s.argmax());
+	}
+}